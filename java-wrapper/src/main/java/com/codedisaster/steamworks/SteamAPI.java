@@ -75,6 +75,26 @@ public class SteamAPI {
 		stream.println("  Steam client active: " + isSteamRunning());
 	}
 
+	/**
+	 * By default, native threads which aren't known to the JVM are attached and detached again for each
+	 * callback they invoke. If enabled, such threads are attached once, as daemon threads, and stay attached
+	 * until they exit.
+	 *
+	 * @see SteamAPI#getCallbackThreadAttachCount()
+	 */
+	public static void setKeepCallbackThreadsAttached(boolean keepAttached) {
+		nativeSetKeepCallbackThreadsAttached(keepAttached);
+	}
+
+	/**
+	 * Returns the number of times a native thread has been attached to the JVM to invoke a callback.
+	 * With {@link SteamAPI#setKeepCallbackThreadsAttached(boolean)} enabled, this value should stop
+	 * increasing once all callback threads have been seen.
+	 */
+	public static long getCallbackThreadAttachCount() {
+		return nativeGetCallbackThreadAttachCount();
+	}
+
 	static boolean isIsNativeAPILoaded() {
 		return isNativeAPILoaded;
 	}
@@ -83,6 +103,7 @@ public class SteamAPI {
 
 	/*JNI
 		#include <steam_api.h>
+		#include "SteamCallbackAdapter.h"
 
 		static JavaVM* staticVM = 0;
 	*/
@@ -111,6 +132,14 @@ public class SteamAPI {
 		SteamAPI_RunCallbacks();
 	*/
 
+	private static native void nativeSetKeepCallbackThreadsAttached(boolean keepAttached); /*
+		SteamCallbackAdapter::setKeepThreadsAttached(keepAttached);
+	*/
+
+	private static native long nativeGetCallbackThreadAttachCount(); /*
+		return SteamCallbackAdapter::getThreadAttachCount();
+	*/
+
 	private static native boolean isSteamRunningNative(); /*
 		return SteamAPI_IsSteamRunning();
 	*/
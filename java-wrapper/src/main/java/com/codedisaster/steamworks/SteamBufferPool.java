@@ -0,0 +1,70 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Simple pool of direct buffers, in power-of-two size classes. Not thread safe.
+ */
+class SteamBufferPool {
+
+	private static final int MinSizeBits = 6;
+	private static final int MaxSizeBits = 30;
+
+	private final ArrayDeque<?>[] freeLists = new ArrayDeque<?>[MaxSizeBits - MinSizeBits + 1];
+	private final int maxBuffersPerSize;
+
+	SteamBufferPool(int maxBuffersPerSize) {
+		this.maxBuffersPerSize = maxBuffersPerSize;
+	}
+
+	/**
+	 * Returns a cleared buffer of at least the requested size.
+	 */
+	ByteBuffer obtain(int size) {
+		int index = sizeClass(size);
+		ArrayDeque<ByteBuffer> freeList = freeList(index);
+
+		ByteBuffer buffer = freeList != null ? freeList.pollLast() : null;
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(1 << (index + MinSizeBits));
+		}
+
+		buffer.clear();
+		return buffer;
+	}
+
+	void free(ByteBuffer buffer) {
+		int capacity = buffer.capacity();
+		int index = sizeClass(capacity);
+
+		if ((1 << (index + MinSizeBits)) != capacity) {
+			// not obtained from this pool
+			return;
+		}
+
+		ArrayDeque<ByteBuffer> freeList = freeList(index);
+		if (freeList == null) {
+			freeList = new ArrayDeque<ByteBuffer>();
+			freeLists[index] = freeList;
+		}
+
+		if (freeList.size() < maxBuffersPerSize) {
+			freeList.addLast(buffer);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private ArrayDeque<ByteBuffer> freeList(int index) {
+		return (ArrayDeque<ByteBuffer>) freeLists[index];
+	}
+
+	private static int sizeClass(int size) {
+		if (size > (1 << MaxSizeBits)) {
+			throw new IllegalArgumentException("Buffer size too large: " + size);
+		}
+		int bits = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+		return Math.max(bits, MinSizeBits) - MinSizeBits;
+	}
+
+}
@@ -1,10 +1,22 @@
 package com.codedisaster.steamworks;
 
+import java.nio.ByteBuffer;
+
 abstract class SteamCallbackAdapter<T> {
 
 	protected final T callback;
 
+	SteamCallbackQueue queue;
+
 	SteamCallbackAdapter(T callback) {
 		this.callback = callback;
 	}
+
+	/**
+	 * Decodes an event record written by the native callback adapter into a {@link SteamCallbackQueue},
+	 * and invokes the matching callback function. The record layout must match the native side.
+	 */
+	void onQueuedEvent(int eventType, ByteBuffer data, int offset) {
+
+	}
 }
@@ -0,0 +1,70 @@
+package com.codedisaster.steamworks;
+
+/**
+ * Measures the cost of invoking a Java callback from native code, using a stub native callback adapter.
+ * No Steam API is involved, so only {@link SteamAPI#loadLibraries()} needs to be called first.
+ * <p>
+ * Dispatch through the method ID cache of callback adapters can be compared with resolving the callback
+ * class and method ID on each call, as adapters did before.
+ */
+public class SteamCallbackBenchmark {
+
+	public interface Callback {
+
+		void onEvent(int value);
+
+	}
+
+	private final Callback callback;
+	private long pointer;
+
+	public SteamCallbackBenchmark(Callback callback) {
+		this.callback = callback;
+		pointer = createBenchmark(callback);
+	}
+
+	/**
+	 * Invokes the callback from native code, once per iteration. Returns the time taken, in nanoseconds.
+	 */
+	public long dispatch(int iterations, boolean cacheMethodIDs) {
+		long start = System.nanoTime();
+
+		if (cacheMethodIDs) {
+			dispatch(pointer, iterations);
+		} else {
+			dispatchUncached(pointer, callback, iterations);
+		}
+
+		return System.nanoTime() - start;
+	}
+
+	public void dispose() {
+		if (pointer != 0) {
+			deleteBenchmark(pointer);
+			pointer = 0;
+		}
+	}
+
+	// @off
+
+	/*JNI
+		#include "SteamCallbackBenchmark.h"
+	*/
+
+	private static native long createBenchmark(Callback callback); /*
+		return (intp) new SteamCallbackBenchmark(env, callback);
+	*/
+
+	private static native void deleteBenchmark(long pointer); /*
+		delete (SteamCallbackBenchmark*) pointer;
+	*/
+
+	private static native void dispatch(long pointer, int iterations); /*
+		((SteamCallbackBenchmark*) pointer)->dispatch(iterations);
+	*/
+
+	private static native void dispatchUncached(long pointer, Callback callback, int iterations); /*
+		((SteamCallbackBenchmark*) pointer)->dispatchUncached(callback, iterations);
+	*/
+
+}
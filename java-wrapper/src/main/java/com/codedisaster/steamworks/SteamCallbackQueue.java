@@ -0,0 +1,218 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Collects callback events in an off-heap buffer instead of invoking the Java callbacks one by one from
+ * native code. Call {@link SteamCallbackQueue#drain()} after {@link SteamAPI#runCallbacks()} to decode and
+ * dispatch all queued events in a single loop.
+ * <p>
+ * Callbacks are enabled for queueing per interface, e.g. with {@link SteamMatchmaking#setCallbackQueue}.
+ * Events which carry strings, and results of asynchronous API calls, are still invoked directly. The
+ * order of callbacks is preserved: pending events are drained before any direct invocation, or if the
+ * queue runs full.
+ * <p>
+ * The queue is not thread-safe. It must be drained on the thread which calls {@link SteamAPI#runCallbacks()}.
+ */
+public class SteamCallbackQueue {
+
+	static final int HeaderSize = 8;
+	static final int RecordHeaderSize = 8;
+
+	private final ByteBuffer buffer;
+	private long pointer;
+
+	private SteamCallbackAdapter<?>[] adapters = new SteamCallbackAdapter<?>[4];
+	private long[] callbacks = new long[4];
+	private int numAdapters = 0;
+
+	private long numEventsDrained = 0;
+
+	public SteamCallbackQueue(int capacity) {
+		buffer = ByteBuffer.allocateDirect(HeaderSize + capacity).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Dispatches all queued events to their callbacks, then resets the queue.
+	 * <p>
+	 * If a callback throws, the exception is passed on. Only the event being dispatched is lost, the events
+	 * after it stay queued for the next call.
+	 *
+	 * @return the number of events dispatched
+	 */
+	public int drain() {
+		int end = HeaderSize + buffer.getInt(0);
+		int count = buffer.getInt(4);
+
+		int offset = HeaderSize;
+		int drained = 0;
+
+		try {
+			while (offset < end) {
+				int adapterIndex = buffer.getShort(offset);
+				int eventType = buffer.getShort(offset + 2);
+				int payloadSize = buffer.getInt(offset + 4);
+
+				int record = offset;
+				offset += RecordHeaderSize + ((payloadSize + 7) & ~7);
+				drained++;
+
+				SteamCallbackAdapter<?> adapter = adapters[adapterIndex];
+				if (adapter != null) {
+					adapter.onQueuedEvent(eventType, buffer, record + RecordHeaderSize);
+				}
+			}
+		} finally {
+			// keep the records which haven't been dispatched, moved to the front
+			int remaining = end - offset;
+			for (int i = 0; i < remaining; i += 8) {
+				buffer.putLong(HeaderSize + i, buffer.getLong(offset + i));
+			}
+
+			buffer.putInt(0, remaining);
+			buffer.putInt(4, count - drained);
+
+			numEventsDrained += drained;
+		}
+
+		return drained;
+	}
+
+	/**
+	 * Returns the number of events which are waiting to be dispatched.
+	 */
+	public int getNumQueuedEvents() {
+		return buffer.getInt(4);
+	}
+
+	/**
+	 * Returns the total number of events dispatched by this queue.
+	 */
+	public long getNumEventsDrained() {
+		return numEventsDrained;
+	}
+
+	/**
+	 * Releases the native resources of this queue. Interfaces which still use this queue are switched back
+	 * to direct callbacks. Queued events are discarded.
+	 */
+	public void dispose() {
+		for (int i = 0; i < numAdapters; i++) {
+			SteamCallbackAdapter<?> adapter = adapters[i];
+			if (adapter != null) {
+				if (callbacks[i] != 0) {
+					SteamInterface.setCallbackQueue(callbacks[i], 0L, -1);
+				}
+				adapter.queue = null;
+				adapters[i] = null;
+			}
+		}
+
+		if (pointer != 0) {
+			deleteQueue(pointer);
+			pointer = 0;
+		}
+
+		buffer.putInt(0, 0);
+		buffer.putInt(4, 0);
+	}
+
+	/**
+	 * Registers the Java adapter of a native callback, and returns its index. The native callback is
+	 * switched back to direct callbacks if the queue is disposed.
+	 */
+	int register(SteamCallbackAdapter<?> adapter, long callback) {
+		for (int i = 0; i < numAdapters; i++) {
+			if (adapters[i] == adapter) {
+				callbacks[i] = callback;
+				return i;
+			}
+		}
+
+		if (numAdapters == adapters.length) {
+			SteamCallbackAdapter<?>[] resized = new SteamCallbackAdapter<?>[numAdapters * 2];
+			System.arraycopy(adapters, 0, resized, 0, numAdapters);
+			adapters = resized;
+
+			long[] resizedCallbacks = new long[numAdapters * 2];
+			System.arraycopy(callbacks, 0, resizedCallbacks, 0, numAdapters);
+			callbacks = resizedCallbacks;
+		}
+
+		adapters[numAdapters] = adapter;
+		callbacks[numAdapters] = callback;
+		return numAdapters++;
+	}
+
+	void unregister(SteamCallbackAdapter<?> adapter) {
+		for (int i = 0; i < numAdapters; i++) {
+			if (adapters[i] == adapter) {
+				// keep the index reserved, records of this adapter may still be queued
+				adapters[i] = null;
+				callbacks[i] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Appends an event record, with the same layout the native callback adapters use. The payload is read
+	 * from <code>data.position()</code> to <code>data.limit()</code>, the buffer state isn't changed.
+	 * <p>
+	 * This works without native libraries, so the decoding of adapters registered with
+	 * {@link SteamCallbackQueue#register(SteamCallbackAdapter, long)} can be tested with synthetic events.
+	 *
+	 * @return false if the record doesn't fit into the queue
+	 */
+	boolean push(int adapterIndex, int eventType, ByteBuffer data) {
+		int size = data.remaining();
+		int recordSize = RecordHeaderSize + ((size + 7) & ~7);
+		int used = buffer.getInt(0);
+
+		if (HeaderSize + used + recordSize > buffer.capacity()) {
+			return false;
+		}
+
+		int record = HeaderSize + used;
+		buffer.putShort(record, (short) adapterIndex);
+		buffer.putShort(record + 2, (short) eventType);
+		buffer.putInt(record + 4, size);
+
+		int position = data.position();
+		for (int i = 0; i < size; i++) {
+			buffer.put(record + RecordHeaderSize + i, data.get(position + i));
+		}
+
+		buffer.putInt(0, used + recordSize);
+		buffer.putInt(4, buffer.getInt(4) + 1);
+		return true;
+	}
+
+	long getPointer() {
+		// the native queue is created on first use, so the Java side works without native libraries
+		if (pointer == 0) {
+			pointer = createQueue(this, buffer);
+		}
+		return pointer;
+	}
+
+	@SuppressWarnings("unused")
+	void flush() {
+		drain();
+	}
+
+	// @off
+
+	/*JNI
+		#include "SteamCallbackQueue.h"
+	*/
+
+	private static native long createQueue(SteamCallbackQueue javaQueue, ByteBuffer buffer); /*
+		return (intp) new SteamCallbackQueue(env, javaQueue, buffer);
+	*/
+
+	private static native void deleteQueue(long queue); /*
+		delete (SteamCallbackQueue*) queue;
+	*/
+
+}
@@ -142,8 +142,20 @@ public class SteamFriends extends SteamInterface {
 		AddToCartAndShow
 	}
 
+	private SteamFriendsCallbackAdapter callbackAdapter;
+
 	public SteamFriends(SteamFriendsCallback callback) {
-		super(SteamAPI.getSteamFriendsPointer(), createCallback(new SteamFriendsCallbackAdapter(callback)));
+		super(SteamAPI.getSteamFriendsPointer());
+		callbackAdapter = new SteamFriendsCallbackAdapter(callback);
+		setCallback(createCallback(callbackAdapter));
+	}
+
+	/**
+	 * Queues callbacks in a {@link SteamCallbackQueue} instead of invoking them directly. Pass
+	 * <code>null</code> to switch back to direct callbacks.
+	 */
+	public void setCallbackQueue(SteamCallbackQueue queue) {
+		setCallbackQueue(callbackAdapter, queue);
 	}
 
 	public String getPersonaName() {
@@ -1,14 +1,45 @@
 package com.codedisaster.steamworks;
 
+import java.nio.ByteBuffer;
+
 @SuppressWarnings("unused")
 class SteamFriendsCallbackAdapter extends SteamCallbackAdapter<SteamFriendsCallback> {
 
 	private static final SteamFriends.PersonaChange[] personaChangeValues = SteamFriends.PersonaChange.values();
 
+	// event types of queued records, must match SteamFriendsCallback.cpp
+	private static final int PersonaStateChangeEvent = 1;
+	private static final int GameOverlayActivatedEvent = 2;
+	private static final int GameLobbyJoinRequestedEvent = 3;
+	private static final int AvatarImageLoadedEvent = 4;
+	private static final int FriendRichPresenceUpdateEvent = 5;
+
 	SteamFriendsCallbackAdapter(SteamFriendsCallback callback) {
 		super(callback);
 	}
 
+	@Override
+	void onQueuedEvent(int eventType, ByteBuffer data, int offset) {
+		switch (eventType) {
+			case PersonaStateChangeEvent:
+				onPersonaStateChange(data.getLong(offset), data.getInt(offset + 8));
+				break;
+			case GameOverlayActivatedEvent:
+				onGameOverlayActivated(data.getInt(offset) != 0);
+				break;
+			case GameLobbyJoinRequestedEvent:
+				onGameLobbyJoinRequested(data.getLong(offset), data.getLong(offset + 8));
+				break;
+			case AvatarImageLoadedEvent:
+				onAvatarImageLoaded(data.getLong(offset), data.getInt(offset + 8),
+						data.getInt(offset + 12), data.getInt(offset + 16));
+				break;
+			case FriendRichPresenceUpdateEvent:
+				onFriendRichPresenceUpdate(data.getLong(offset), data.getInt(offset + 8));
+				break;
+		}
+	}
+
 	void onSetPersonaNameResponse(boolean success, boolean localSuccess, int result) {
 		callback.onSetPersonaNameResponse(success, localSuccess, SteamResult.byValue(result));
 	}
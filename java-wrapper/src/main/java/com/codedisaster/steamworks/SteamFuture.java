@@ -0,0 +1,150 @@
+package com.codedisaster.steamworks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of an asynchronous operation, completed by the utility classes of this library.
+ * <p>
+ * Results can be waited for with {@link SteamFuture#get()}, or received by a {@link Listener}. Listeners are
+ * called by the thread which completes the future, which is usually the thread running Steam callbacks,
+ * or immediately by {@link SteamFuture#addListener(Listener)} if the future is already done.
+ */
+public class SteamFuture<T> implements Future<T> {
+
+	public interface Listener<T> {
+
+		void onComplete(SteamFuture<T> future);
+
+	}
+
+	private static final int Pending = 0;
+	private static final int Completed = 1;
+	private static final int Failed = 2;
+	private static final int Cancelled = 3;
+
+	private int state = Pending;
+	private T result;
+	private Throwable failure;
+	private List<Listener<T>> listeners;
+
+	public void addListener(Listener<T> listener) {
+		synchronized (this) {
+			if (state == Pending) {
+				if (listeners == null) {
+					listeners = new ArrayList<Listener<T>>(1);
+				}
+				listeners.add(listener);
+				return;
+			}
+		}
+		listener.onComplete(this);
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return finish(Cancelled, null, null);
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+		return state == Cancelled;
+	}
+
+	@Override
+	public synchronized boolean isDone() {
+		return state != Pending;
+	}
+
+	/**
+	 * Returns true if the future has been completed with a result.
+	 */
+	public synchronized boolean isCompleted() {
+		return state == Completed;
+	}
+
+	@Override
+	public synchronized T get() throws InterruptedException, ExecutionException {
+		while (state == Pending) {
+			wait();
+		}
+		return report();
+	}
+
+	@Override
+	public synchronized T get(long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+
+		long remaining = unit.toNanos(timeout);
+		long deadline = System.nanoTime() + remaining;
+
+		while (state == Pending) {
+			if (remaining <= 0) {
+				throw new TimeoutException();
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			remaining = deadline - System.nanoTime();
+		}
+
+		return report();
+	}
+
+	/**
+	 * Returns the result, or <code>null</code> if the future isn't completed with a result. Doesn't block.
+	 */
+	public synchronized T getNow() {
+		return state == Completed ? result : null;
+	}
+
+	boolean complete(T result) {
+		return finish(Completed, result, null);
+	}
+
+	boolean fail(Throwable failure) {
+		return finish(Failed, null, failure);
+	}
+
+	private boolean finish(int newState, T result, Throwable failure) {
+		List<Listener<T>> toNotify;
+
+		synchronized (this) {
+			if (state != Pending) {
+				return false;
+			}
+
+			this.state = newState;
+			this.result = result;
+			this.failure = failure;
+
+			toNotify = listeners;
+			listeners = null;
+
+			notifyAll();
+		}
+
+		if (toNotify != null) {
+			for (Listener<T> listener : toNotify) {
+				listener.onComplete(this);
+			}
+		}
+
+		return true;
+	}
+
+	private T report() throws ExecutionException {
+		switch (state) {
+			case Completed:
+				return result;
+			case Cancelled:
+				throw new CancellationException();
+			default:
+				throw new ExecutionException(failure);
+		}
+	}
+
+}
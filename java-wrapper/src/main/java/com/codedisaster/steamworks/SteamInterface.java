@@ -7,6 +7,8 @@ abstract class SteamInterface {
 	protected final long pointer;
 	protected long callback;
 
+	private SteamCallbackAdapter<?> queuedAdapter;
+
 	SteamInterface(long pointer) {
 		this(pointer, 0L);
 	}
@@ -25,9 +27,29 @@ abstract class SteamInterface {
 	}
 
 	public void dispose() {
+		if (queuedAdapter != null && queuedAdapter.queue != null) {
+			queuedAdapter.queue.unregister(queuedAdapter);
+			queuedAdapter.queue = null;
+		}
 		deleteCallback(callback);
 	}
 
+	void setCallbackQueue(SteamCallbackAdapter<?> adapter, SteamCallbackQueue queue) {
+		if (adapter.queue != null) {
+			adapter.queue.unregister(adapter);
+		}
+
+		adapter.queue = queue;
+		queuedAdapter = queue != null ? adapter : null;
+
+		if (queue != null) {
+			int adapterIndex = queue.register(adapter, callback);
+			setCallbackQueue(callback, queue.getPointer(), adapterIndex);
+		} else {
+			setCallbackQueue(callback, 0L, -1);
+		}
+	}
+
 	void checkBuffer(Buffer buffer) throws SteamException {
 		if (!buffer.isDirect()) {
 			throw new SteamException("Direct buffer required.");
@@ -42,10 +64,16 @@ abstract class SteamInterface {
 
 	/*JNI
 		#include "SteamCallbackAdapter.h"
+		#include "SteamCallbackQueue.h"
 	*/
 
 	protected static native void deleteCallback(long callback); /*
 		delete (SteamCallbackAdapter*) callback;
 	*/
 
+	static native void setCallbackQueue(long callback, long queue, int adapterIndex); /*
+		SteamCallbackAdapter* cb = (SteamCallbackAdapter*) callback;
+		cb->setCallbackQueue((SteamCallbackQueue*) queue, (jshort) adapterIndex);
+	*/
+
 }
@@ -0,0 +1,272 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.Charset;
+
+/**
+ * Receives the chat messages of one lobby into an off-heap ring buffer.
+ * <p>
+ * Once added with {@link SteamMatchmaking#addLobbyChatRing(SteamLobbyChatRing)}, the native callback reads
+ * each chat entry of the lobby into the ring, before
+ * {@link SteamMatchmakingCallback#onLobbyChatMessage(SteamID, SteamID, SteamMatchmaking.ChatEntryType, int)}
+ * is invoked. Use a {@link SteamCallbackQueue} to avoid one call into Java per message.
+ * <p>
+ * Entries are read with {@link SteamLobbyChatRing#poll()}, which returns a flyweight pointing into the ring.
+ * Each entry only takes as much space as its message needs, rounded up to 8 bytes. If the ring is full,
+ * new messages are dropped and counted.
+ * <p>
+ * Messages are sent from a reusable direct buffer, see {@link SteamLobbyChatRing#getSendBuffer()}.
+ * <p>
+ * This class is not thread safe. It must be used on the thread which calls {@link SteamAPI#runCallbacks()}.
+ */
+public class SteamLobbyChatRing {
+
+	static final int HeaderSize = 16;
+	static final int RecordHeaderSize = 16;
+
+	/**
+	 * Maximum size of a chat message, in bytes.
+	 */
+	public static final int MaxChatEntrySize = 4096;
+
+	/**
+	 * A chat entry in the ring. Only valid until the next call to {@link SteamLobbyChatRing#poll()}, or to
+	 * {@link SteamAPI#runCallbacks()}.
+	 */
+	public static class Entry {
+
+		private final ByteBuffer buffer;
+		private final ByteBuffer payload;
+		private int offset;
+
+		private Entry(ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.payload = buffer.duplicate().order(buffer.order());
+		}
+
+		/**
+		 * Returns the native handle of the sender, see {@link SteamNativeHandle#getNativeHandle(SteamNativeHandle)}.
+		 */
+		public long getSteamIDUser() {
+			return buffer.getLong(offset + 8);
+		}
+
+		public SteamMatchmaking.ChatEntryType getChatEntryType() {
+			return SteamMatchmaking.ChatEntryType.byCode(buffer.getInt(offset + 4));
+		}
+
+		public int getPayloadSize() {
+			return buffer.getInt(offset);
+		}
+
+		/**
+		 * Returns a view of the message. The buffer is shared by all entries, and its position and limit
+		 * are set to the message bytes on each call.
+		 */
+		public ByteBuffer getPayload() {
+			int start = offset + RecordHeaderSize;
+			payload.limit(start + getPayloadSize());
+			payload.position(start);
+			return payload;
+		}
+
+		/**
+		 * Returns the message as a string, for messages sent with
+		 * {@link SteamMatchmaking#sendLobbyChatMsg(SteamID, String)}, or with
+		 * {@link SteamLobbyChatRing#send(String)}.
+		 */
+		public String getPayloadAsString() {
+			int start = offset + RecordHeaderSize;
+			int length = getPayloadSize();
+
+			// strip the trailing null
+			if (length > 0 && buffer.get(start + length - 1) == 0) {
+				length--;
+			}
+
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++) {
+				bytes[i] = buffer.get(start + i);
+			}
+
+			return new String(bytes, UTF8);
+		}
+	}
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final SteamMatchmaking matchmaking;
+	private final long steamIDLobby;
+
+	final ByteBuffer buffer;
+	private final int capacity;
+	private long pointer;
+
+	private final Entry entry;
+	private int entrySize = -1;
+
+	private final ByteBuffer sendBuffer;
+	private CharsetEncoder encoder;
+
+	private long numEntriesPolled;
+
+	/**
+	 * Creates a ring for a lobby. The capacity, in bytes, is raised to hold at least one message of
+	 * maximum size.
+	 */
+	public SteamLobbyChatRing(SteamMatchmaking matchmaking, SteamID steamIDLobby, int capacity) {
+		this.matchmaking = matchmaking;
+		this.steamIDLobby = steamIDLobby.handle;
+
+		capacity = Math.max(capacity, 2 * (RecordHeaderSize + MaxChatEntrySize));
+		this.capacity = (capacity + 7) & ~7;
+
+		buffer = ByteBuffer.allocateDirect(HeaderSize + this.capacity).order(ByteOrder.nativeOrder());
+		entry = new Entry(buffer);
+
+		sendBuffer = ByteBuffer.allocateDirect(MaxChatEntrySize);
+	}
+
+	public long getSteamIDLobby() {
+		return steamIDLobby;
+	}
+
+	/**
+	 * Returns the next chat entry, or <code>null</code> if the ring is empty. The previous entry returned
+	 * is released.
+	 */
+	public Entry poll() {
+		release();
+
+		if (buffer.getInt(8) == 0) {
+			return null;
+		}
+
+		int read = buffer.getInt(4);
+		int size = buffer.getInt(HeaderSize + read);
+
+		if (size < 0) {
+			// skip to the start of the ring
+			read = 0;
+			buffer.putInt(4, read);
+			size = buffer.getInt(HeaderSize + read);
+		}
+
+		entry.offset = HeaderSize + read;
+		entrySize = RecordHeaderSize + ((size + 7) & ~7);
+
+		numEntriesPolled++;
+		return entry;
+	}
+
+	/**
+	 * Returns the number of entries which are waiting to be polled.
+	 */
+	public int getNumEntries() {
+		return buffer.getInt(8) - (entrySize >= 0 ? 1 : 0);
+	}
+
+	/**
+	 * Returns the number of entries dropped because the ring was full.
+	 */
+	public int getNumDroppedEntries() {
+		return buffer.getInt(12);
+	}
+
+	public long getNumEntriesPolled() {
+		return numEntriesPolled;
+	}
+
+	/**
+	 * Returns the buffer used by {@link SteamLobbyChatRing#send()}, cleared for writing the next message.
+	 */
+	public ByteBuffer getSendBuffer() {
+		sendBuffer.clear();
+		return sendBuffer;
+	}
+
+	/**
+	 * Sends the bytes written to the send buffer, from 0 to <code>position()</code>, to the lobby. The
+	 * buffer state isn't modified.
+	 */
+	public boolean send() {
+		return matchmaking.sendLobbyChatMsg(steamIDLobby, sendBuffer, 0, sendBuffer.position());
+	}
+
+	/**
+	 * Sends a null-terminated string, encoded to UTF-8 into the send buffer.
+	 */
+	public boolean send(String message) throws SteamException {
+		if (encoder == null) {
+			encoder = UTF8.newEncoder();
+		}
+
+		ByteBuffer data = getSendBuffer();
+		data.limit(data.capacity() - 1);
+
+		encoder.reset();
+		CoderResult result = encoder.encode(CharBuffer.wrap(message), data, true);
+		if (!result.isUnderflow() || !encoder.flush(data).isUnderflow()) {
+			throw new SteamException("Message exceeds " + MaxChatEntrySize + " bytes.");
+		}
+
+		data.limit(data.capacity());
+		data.put((byte) 0);
+
+		return send();
+	}
+
+	/**
+	 * Removes the ring from its {@link SteamMatchmaking} interface, and releases its native resources.
+	 */
+	public void dispose() {
+		if (pointer != 0) {
+			matchmaking.removeLobbyChatRing(this);
+			deleteRing(pointer);
+			pointer = 0;
+		}
+	}
+
+	private void release() {
+		if (entrySize < 0) {
+			return;
+		}
+
+		int read = buffer.getInt(4) + entrySize;
+		if (read == capacity) {
+			read = 0;
+		}
+
+		buffer.putInt(4, read);
+		buffer.putInt(8, buffer.getInt(8) - 1);
+
+		entrySize = -1;
+	}
+
+	long getPointer() {
+		// the native ring is created on first use, so the Java side works without native libraries
+		if (pointer == 0) {
+			pointer = createRing(buffer, steamIDLobby);
+		}
+		return pointer;
+	}
+
+	// @off
+
+	/*JNI
+		#include "SteamLobbyChatRing.h"
+	*/
+
+	private static native long createRing(ByteBuffer buffer, long steamIDLobby); /*
+		return (intp) new SteamLobbyChatRing(env, buffer, steamIDLobby);
+	*/
+
+	private static native void deleteRing(long ring); /*
+		delete (SteamLobbyChatRing*) ring;
+	*/
+
+}
@@ -0,0 +1,221 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Lobby IDs and selected lobby data values of a lobby list, as filled by
+ * {@link SteamMatchmaking#getLobbyListSnapshot(String[], SteamLobbyListSnapshot)}.
+ * <p>
+ * Values are kept as a packed table of UTF-8 strings in a direct buffer, and only decoded to Java
+ * strings when accessed. Missing values are reported as empty strings, same as
+ * {@link SteamMatchmaking#getLobbyData(SteamID, String)}.
+ * <p>
+ * A snapshot can be reused for subsequent lobby lists, which avoids most allocations.
+ * <p>
+ * Lazy decoding shares scratch space, so a snapshot must not be read by multiple threads at once. Snapshots
+ * returned by {@link SteamLobbyQueryService} are the exception: all their values are decoded before they
+ * are published, so reads don't modify any state.
+ */
+public class SteamLobbyListSnapshot {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	String[] keys = new String[0];
+	ByteBuffer packedKeys = ByteBuffer.allocateDirect(256);
+
+	long[] lobbyIDs = new long[64];
+	int numLobbies;
+
+	/**
+	 * Offset and length of each value, stored as pairs per lobby and key.
+	 */
+	int[] values = new int[64 * 2];
+	ByteBuffer data = ByteBuffer.allocateDirect(16 * 1024);
+
+	private String[] decoded = new String[64];
+	private byte[] scratch = new byte[256];
+
+	public int getNumLobbies() {
+		return numLobbies;
+	}
+
+	public int getNumKeys() {
+		return keys.length;
+	}
+
+	public String getKey(int keyIndex) {
+		return keys[keyIndex];
+	}
+
+	/**
+	 * Returns the index of a key, or -1 if it's not part of this snapshot.
+	 */
+	public int getKeyIndex(String key) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i].equals(key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the native handle of a lobby, see {@link SteamNativeHandle#getNativeHandle(SteamNativeHandle)}.
+	 */
+	public long getLobbyID(int lobbyIndex) {
+		checkLobbyIndex(lobbyIndex);
+		return lobbyIDs[lobbyIndex];
+	}
+
+	public SteamID getSteamIDLobby(int lobbyIndex) {
+		return new SteamID(getLobbyID(lobbyIndex));
+	}
+
+	/**
+	 * Returns the length of a value in bytes.
+	 */
+	public int getValueLength(int lobbyIndex, int keyIndex) {
+		return values[valueIndex(lobbyIndex, keyIndex) + 1];
+	}
+
+	public String getValue(int lobbyIndex, String key) {
+		int keyIndex = getKeyIndex(key);
+		if (keyIndex < 0) {
+			throw new IllegalArgumentException("Key not part of snapshot: " + key);
+		}
+		return getValue(lobbyIndex, keyIndex);
+	}
+
+	/**
+	 * Returns a value, decoding it on first access.
+	 */
+	public String getValue(int lobbyIndex, int keyIndex) {
+		int index = valueIndex(lobbyIndex, keyIndex);
+		int slot = index / 2;
+
+		String value = decoded[slot];
+		if (value == null) {
+			int offset = values[index];
+			int length = values[index + 1];
+
+			if (length == 0) {
+				value = "";
+			} else {
+				if (scratch.length < length) {
+					scratch = new byte[Math.max(length, scratch.length * 2)];
+				}
+				for (int i = 0; i < length; i++) {
+					scratch[i] = data.get(offset + i);
+				}
+				value = new String(scratch, 0, length, UTF8);
+			}
+
+			decoded[slot] = value;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Decodes all values, so later calls to {@link SteamLobbyListSnapshot#getValue(int, int)} only read.
+	 */
+	void decodeAll() {
+		for (int lobbyIndex = 0; lobbyIndex < numLobbies; lobbyIndex++) {
+			for (int keyIndex = 0; keyIndex < keys.length; keyIndex++) {
+				getValue(lobbyIndex, keyIndex);
+			}
+		}
+	}
+
+	/**
+	 * Copies the raw UTF-8 bytes of a value into a buffer, starting at <code>dest.position()</code>, without
+	 * modifying the buffer state. Returns the number of bytes copied.
+	 */
+	public int getValue(int lobbyIndex, int keyIndex, ByteBuffer dest) throws SteamException {
+		int index = valueIndex(lobbyIndex, keyIndex);
+		int offset = values[index];
+		int length = values[index + 1];
+
+		if (dest.remaining() < length) {
+			throw new SteamException("Buffer too small, " + dest.remaining() + " found but " + length + " expected.");
+		}
+
+		int position = dest.position();
+		for (int i = 0; i < length; i++) {
+			dest.put(position + i, data.get(offset + i));
+		}
+
+		return length;
+	}
+
+	void setKeys(String[] keys) {
+		if (Arrays.equals(this.keys, keys)) {
+			return;
+		}
+
+		int size = 0;
+		byte[][] bytes = new byte[keys.length][];
+		for (int i = 0; i < keys.length; i++) {
+			bytes[i] = keys[i].getBytes(UTF8);
+			size += bytes[i].length + 1;
+		}
+
+		if (packedKeys.capacity() < size) {
+			packedKeys = ByteBuffer.allocateDirect(size);
+		}
+
+		packedKeys.clear();
+		for (byte[] key : bytes) {
+			packedKeys.put(key);
+			packedKeys.put((byte) 0);
+		}
+		packedKeys.flip();
+
+		this.keys = keys.clone();
+	}
+
+	/**
+	 * Returns the maximum number of lobbies which fit into the current arrays.
+	 */
+	int getMaxLobbies() {
+		return keys.length > 0 ? Math.min(lobbyIDs.length, values.length / (keys.length * 2)) : lobbyIDs.length;
+	}
+
+	void growLobbies() {
+		int maxLobbies = lobbyIDs.length * 2;
+		lobbyIDs = new long[maxLobbies];
+		values = new int[maxLobbies * Math.max(keys.length, 1) * 2];
+	}
+
+	void growData() {
+		data = ByteBuffer.allocateDirect(data.capacity() * 2);
+	}
+
+	void reset(int numLobbies) {
+		this.numLobbies = numLobbies;
+
+		int numValues = numLobbies * keys.length;
+		if (decoded.length < numValues) {
+			decoded = new String[Math.max(numValues, decoded.length * 2)];
+		} else {
+			Arrays.fill(decoded, 0, numValues, null);
+		}
+	}
+
+	private int valueIndex(int lobbyIndex, int keyIndex) {
+		checkLobbyIndex(lobbyIndex);
+		if (keyIndex < 0 || keyIndex >= keys.length) {
+			throw new IndexOutOfBoundsException("Key index " + keyIndex + " out of range.");
+		}
+		return (lobbyIndex * keys.length + keyIndex) * 2;
+	}
+
+	private void checkLobbyIndex(int lobbyIndex) {
+		if (lobbyIndex < 0 || lobbyIndex >= numLobbies) {
+			throw new IndexOutOfBoundsException("Lobby index " + lobbyIndex + " out of range.");
+		}
+	}
+
+}
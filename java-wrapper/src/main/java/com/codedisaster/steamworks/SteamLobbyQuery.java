@@ -0,0 +1,196 @@
+package com.codedisaster.steamworks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable set of lobby list filters, and the lobby data keys to read for each lobby found, as used by
+ * {@link SteamLobbyQueryService}.
+ * <p>
+ * Each <code>with...()</code> function returns a new query. Queries with equal filters, added in the same
+ * order, and with equal keys are equal.
+ */
+public final class SteamLobbyQuery {
+
+	private static final int StringFilter = 0;
+	private static final int NumericalFilter = 1;
+	private static final int NearValueFilter = 2;
+	private static final int CompatibleMembersFilter = 3;
+
+	private static final class Filter {
+		final int type;
+		final String key;
+		final String stringValue;
+		final long value;
+		final int comparison;
+
+		Filter(int type, String key, String stringValue, long value, int comparison) {
+			this.type = type;
+			this.key = key;
+			this.stringValue = stringValue;
+			this.value = value;
+			this.comparison = comparison;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Filter)) {
+				return false;
+			}
+			Filter other = (Filter) obj;
+			return type == other.type && value == other.value && comparison == other.comparison
+					&& equal(key, other.key) && equal(stringValue, other.stringValue);
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = type;
+			hash = 31 * hash + (key != null ? key.hashCode() : 0);
+			hash = 31 * hash + (stringValue != null ? stringValue.hashCode() : 0);
+			hash = 31 * hash + (int) (value ^ (value >>> 32));
+			return 31 * hash + comparison;
+		}
+	}
+
+	private final List<Filter> filters;
+	private final int slotsAvailable;
+	private final SteamMatchmaking.LobbyDistanceFilter distance;
+	private final int maxResults;
+	private final String[] keys;
+
+	private final int hash;
+
+	public SteamLobbyQuery() {
+		this(Collections.<Filter>emptyList(), -1, null, -1, new String[0]);
+	}
+
+	private SteamLobbyQuery(List<Filter> filters, int slotsAvailable,
+							SteamMatchmaking.LobbyDistanceFilter distance, int maxResults, String[] keys) {
+		this.filters = filters;
+		this.slotsAvailable = slotsAvailable;
+		this.distance = distance;
+		this.maxResults = maxResults;
+		this.keys = keys;
+
+		int hash = filters.hashCode();
+		hash = 31 * hash + slotsAvailable;
+		hash = 31 * hash + (distance != null ? distance.hashCode() : 0);
+		hash = 31 * hash + maxResults;
+		this.hash = 31 * hash + Arrays.hashCode(keys);
+	}
+
+	public SteamLobbyQuery withStringFilter(String keyToMatch, String valueToMatch,
+											SteamMatchmaking.LobbyComparison comparisonType) {
+		return withFilter(new Filter(StringFilter, keyToMatch, valueToMatch, 0, comparisonType.ordinal()));
+	}
+
+	public SteamLobbyQuery withNumericalFilter(String keyToMatch, int valueToMatch,
+											   SteamMatchmaking.LobbyComparison comparisonType) {
+		return withFilter(new Filter(NumericalFilter, keyToMatch, null, valueToMatch, comparisonType.ordinal()));
+	}
+
+	public SteamLobbyQuery withNearValueFilter(String keyToMatch, int valueToBeCloseTo) {
+		return withFilter(new Filter(NearValueFilter, keyToMatch, null, valueToBeCloseTo, 0));
+	}
+
+	public SteamLobbyQuery withCompatibleMembersFilter(SteamID steamIDLobby) {
+		return withFilter(new Filter(CompatibleMembersFilter, null, null, steamIDLobby.handle, 0));
+	}
+
+	public SteamLobbyQuery withSlotsAvailable(int slotsAvailable) {
+		return new SteamLobbyQuery(filters, slotsAvailable, distance, maxResults, keys);
+	}
+
+	public SteamLobbyQuery withDistanceFilter(SteamMatchmaking.LobbyDistanceFilter distance) {
+		return new SteamLobbyQuery(filters, slotsAvailable, distance, maxResults, keys);
+	}
+
+	public SteamLobbyQuery withResultCount(int maxResults) {
+		return new SteamLobbyQuery(filters, slotsAvailable, distance, maxResults, keys);
+	}
+
+	/**
+	 * Sets the lobby data keys read for each lobby, see {@link SteamLobbyListSnapshot}.
+	 */
+	public SteamLobbyQuery withKeys(String... keys) {
+		return new SteamLobbyQuery(filters, slotsAvailable, distance, maxResults, keys.clone());
+	}
+
+	public String[] getKeys() {
+		return keys.clone();
+	}
+
+	/**
+	 * Sets the filters for the next call to {@link SteamMatchmaking#requestLobbyList()}.
+	 */
+	void apply(SteamMatchmaking matchmaking) {
+		SteamMatchmaking.LobbyComparison[] comparisons = SteamMatchmaking.LobbyComparison.values();
+
+		for (Filter filter : filters) {
+			switch (filter.type) {
+				case StringFilter:
+					matchmaking.addRequestLobbyListStringFilter(filter.key, filter.stringValue,
+							comparisons[filter.comparison]);
+					break;
+				case NumericalFilter:
+					matchmaking.addRequestLobbyListNumericalFilter(filter.key, (int) filter.value,
+							comparisons[filter.comparison]);
+					break;
+				case NearValueFilter:
+					matchmaking.addRequestLobbyListNearValueFilter(filter.key, (int) filter.value);
+					break;
+				case CompatibleMembersFilter:
+					matchmaking.addRequestLobbyListCompatibleMembersFilter(new SteamID(filter.value));
+					break;
+			}
+		}
+
+		if (slotsAvailable >= 0) {
+			matchmaking.addRequestLobbyListFilterSlotsAvailable(slotsAvailable);
+		}
+
+		if (distance != null) {
+			matchmaking.addRequestLobbyListDistanceFilter(distance);
+		}
+
+		if (maxResults >= 0) {
+			matchmaking.addRequestLobbyListResultCountFilter(maxResults);
+		}
+	}
+
+	String[] keys() {
+		return keys;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof SteamLobbyQuery)) {
+			return false;
+		}
+		SteamLobbyQuery other = (SteamLobbyQuery) obj;
+		return hash == other.hash && slotsAvailable == other.slotsAvailable && distance == other.distance
+				&& maxResults == other.maxResults && filters.equals(other.filters) && Arrays.equals(keys, other.keys);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	private SteamLobbyQuery withFilter(Filter filter) {
+		List<Filter> list = new ArrayList<Filter>(filters.size() + 1);
+		list.addAll(filters);
+		list.add(filter);
+		return new SteamLobbyQuery(Collections.unmodifiableList(list), slotsAvailable, distance, maxResults, keys);
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+}
@@ -0,0 +1,229 @@
+package com.codedisaster.steamworks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs lobby list requests described by {@link SteamLobbyQuery} objects, one at a time.
+ * <p>
+ * Lobby list filters are global state of the matchmaking interface, and
+ * {@link SteamMatchmakingCallback#onLobbyMatchList(int)} doesn't tell which request it answers. This
+ * service owns the filter state: it sets the filters of a query and calls
+ * {@link SteamMatchmaking#requestLobbyList()} only when no other request is pending. Other code must not
+ * request lobby lists while the service is in use.
+ * <p>
+ * Requests for a query which is already queued, or in flight, share the same {@link SteamFuture}. Results
+ * are cached for a fixed time, and returned with an already completed future.
+ * <p>
+ * Forward {@link SteamMatchmakingCallback#onLobbyMatchList(int)} to
+ * {@link SteamLobbyQueryService#onLobbyMatchList(int)}, and call {@link SteamLobbyQueryService#update()}
+ * regularly to send queued requests. Queries can be requested from any thread. Futures are completed by the
+ * thread calling these functions.
+ * <p>
+ * Each snapshot is shared by all callers which requested the same query, and has all values decoded before
+ * it is published, so it can be read by multiple threads. Shared snapshots must not be reused for other
+ * lobby lists.
+ */
+public class SteamLobbyQueryService {
+
+	private static class CacheEntry {
+		final SteamLobbyListSnapshot snapshot;
+		final long expires;
+
+		CacheEntry(SteamLobbyListSnapshot snapshot, long expires) {
+			this.snapshot = snapshot;
+			this.expires = expires;
+		}
+	}
+
+	private final SteamMatchmaking matchmaking;
+	private final long ttlNanos;
+	private final long requestTimeoutNanos;
+
+	private final Map<SteamLobbyQuery, SteamFuture<SteamLobbyListSnapshot>> pending =
+			new HashMap<SteamLobbyQuery, SteamFuture<SteamLobbyListSnapshot>>();
+	private final ArrayDeque<SteamLobbyQuery> queue = new ArrayDeque<SteamLobbyQuery>();
+	private final Map<SteamLobbyQuery, CacheEntry> cache = new HashMap<SteamLobbyQuery, CacheEntry>();
+
+	private SteamLobbyQuery inFlight;
+	private long deadline;
+
+	private long numHits;
+	private long numMisses;
+	private long numCoalesced;
+	private long numRequestsSent;
+
+	/**
+	 * @param ttlMillis time a result is cached
+	 * @param requestTimeoutMillis time to wait for {@link SteamMatchmakingCallback#onLobbyMatchList(int)}
+	 *                             before a request fails
+	 */
+	public SteamLobbyQueryService(SteamMatchmaking matchmaking, long ttlMillis, long requestTimeoutMillis) {
+		this.matchmaking = matchmaking;
+		this.ttlNanos = ttlMillis * 1000000L;
+		this.requestTimeoutNanos = requestTimeoutMillis * 1000000L;
+	}
+
+	/**
+	 * Returns the lobbies matching a query, from the cache if possible.
+	 */
+	public synchronized SteamFuture<SteamLobbyListSnapshot> request(SteamLobbyQuery query) {
+		CacheEntry entry = cache.get(query);
+		if (entry != null) {
+			if (System.nanoTime() - entry.expires < 0) {
+				numHits++;
+				SteamFuture<SteamLobbyListSnapshot> future = new SteamFuture<SteamLobbyListSnapshot>();
+				future.complete(entry.snapshot);
+				return future;
+			}
+			cache.remove(query);
+		}
+
+		SteamFuture<SteamLobbyListSnapshot> future = pending.get(query);
+		if (future != null) {
+			numCoalesced++;
+			return future;
+		}
+
+		numMisses++;
+		future = new SteamFuture<SteamLobbyListSnapshot>();
+		pending.put(query, future);
+		queue.addLast(query);
+		return future;
+	}
+
+	/**
+	 * Removes a query from the cache, so the next request is sent to Steam.
+	 */
+	public synchronized void invalidate(SteamLobbyQuery query) {
+		cache.remove(query);
+	}
+
+	public synchronized void invalidateAll() {
+		cache.clear();
+	}
+
+	/**
+	 * Reads the lobby list of the request in flight. To be called from the matchmaking callback.
+	 */
+	public void onLobbyMatchList(int lobbiesMatching) {
+		SteamFuture<SteamLobbyListSnapshot> future;
+		SteamLobbyListSnapshot snapshot;
+
+		synchronized (this) {
+			if (inFlight == null) {
+				return;
+			}
+
+			snapshot = new SteamLobbyListSnapshot();
+			matchmaking.getLobbyListSnapshot(inFlight.keys(), snapshot);
+			snapshot.decodeAll();
+
+			cache.put(inFlight, new CacheEntry(snapshot, System.nanoTime() + ttlNanos));
+			future = pending.remove(inFlight);
+			inFlight = null;
+
+			sendNext(System.nanoTime());
+		}
+
+		future.complete(snapshot);
+	}
+
+	/**
+	 * Times out the request in flight, sends the next queued request, and evicts expired results.
+	 */
+	public void update() {
+		long now = System.nanoTime();
+		SteamFuture<SteamLobbyListSnapshot> timedOut = null;
+
+		synchronized (this) {
+			if (inFlight != null && now - deadline >= 0) {
+				timedOut = pending.remove(inFlight);
+				inFlight = null;
+			}
+
+			sendNext(now);
+
+			Iterator<CacheEntry> entries = cache.values().iterator();
+			while (entries.hasNext()) {
+				if (now - entries.next().expires >= 0) {
+					entries.remove();
+				}
+			}
+		}
+
+		if (timedOut != null) {
+			timedOut.fail(new SteamException("Lobby list request timed out."));
+		}
+	}
+
+	/**
+	 * Cancels all queued requests, and the request in flight.
+	 */
+	public void cancelAll() {
+		List<SteamFuture<SteamLobbyListSnapshot>> cancelled;
+
+		synchronized (this) {
+			cancelled = new ArrayList<SteamFuture<SteamLobbyListSnapshot>>(pending.values());
+			pending.clear();
+			queue.clear();
+			inFlight = null;
+		}
+
+		for (SteamFuture<SteamLobbyListSnapshot> future : cancelled) {
+			future.cancel(false);
+		}
+	}
+
+	public synchronized int getNumQueued() {
+		return queue.size();
+	}
+
+	public synchronized boolean isRequestInFlight() {
+		return inFlight != null;
+	}
+
+	/**
+	 * Returns the number of requests answered from the cache.
+	 */
+	public synchronized long getNumHits() {
+		return numHits;
+	}
+
+	/**
+	 * Returns the number of requests which weren't cached, or queued already.
+	 */
+	public synchronized long getNumMisses() {
+		return numMisses;
+	}
+
+	/**
+	 * Returns the number of requests which joined a queued request, or the request in flight.
+	 */
+	public synchronized long getNumCoalesced() {
+		return numCoalesced;
+	}
+
+	public synchronized long getNumRequestsSent() {
+		return numRequestsSent;
+	}
+
+	private void sendNext(long now) {
+		if (inFlight != null || queue.isEmpty()) {
+			return;
+		}
+
+		SteamLobbyQuery query = queue.pollFirst();
+		query.apply(matchmaking);
+		matchmaking.requestLobbyList();
+
+		inFlight = query;
+		deadline = now + requestTimeoutNanos;
+		numRequestsSent++;
+	}
+
+}
@@ -0,0 +1,200 @@
+package com.codedisaster.steamworks;
+
+/**
+ * Keeps the member list of a lobby, updated from matchmaking callbacks, and collects who joined and who
+ * left since the last poll.
+ * <p>
+ * Forward {@link SteamMatchmakingCallback#onLobbyEnter(SteamID, int, boolean, SteamMatchmaking.ChatRoomEnterResponse)}
+ * and {@link SteamMatchmakingCallback#onLobbyChatUpdate(SteamID, SteamID, SteamID, SteamMatchmaking.ChatMemberStateChange)}
+ * to the functions of the same name, and call {@link SteamLobbyRoster#poll()} once per tick.
+ * <p>
+ * Members are identified by native handles, see {@link SteamNativeHandle#getNativeHandle(SteamNativeHandle)},
+ * and kept in a primitive hash set. The member list is only read from Steam on entering the lobby, and if
+ * a consistency check fails: if callbacks contradict the cached list, or if the member count reported by
+ * Steam differs on poll.
+ * <p>
+ * This class is not thread safe.
+ */
+public class SteamLobbyRoster {
+
+	private final SteamMatchmaking matchmaking;
+	private final long steamIDLobby;
+
+	private final SteamLongSet members = new SteamLongSet();
+
+	private final SteamLongSet joined = new SteamLongSet();
+	private final SteamLongSet left = new SteamLongSet();
+	private final SteamLongSet polledJoined = new SteamLongSet();
+	private final SteamLongSet polledLeft = new SteamLongSet();
+
+	private long[] resyncBuffer = new long[64];
+	private final SteamLongSet resyncMembers = new SteamLongSet();
+
+	private boolean entered;
+	private boolean inconsistent;
+
+	private long numResyncs;
+
+	public SteamLobbyRoster(SteamMatchmaking matchmaking, SteamID steamIDLobby) {
+		this.matchmaking = matchmaking;
+		this.steamIDLobby = steamIDLobby.handle;
+	}
+
+	public void onLobbyEnter(SteamID steamIDLobby, int chatPermissions, boolean blocked,
+							 SteamMatchmaking.ChatRoomEnterResponse response) {
+		if (steamIDLobby.handle == this.steamIDLobby && response == SteamMatchmaking.ChatRoomEnterResponse.Success) {
+			entered = true;
+			resync();
+		}
+	}
+
+	public void onLobbyChatUpdate(SteamID steamIDLobby, SteamID steamIDUserChanged,
+								  SteamID steamIDMakingChange, SteamMatchmaking.ChatMemberStateChange stateChange) {
+		if (steamIDLobby.handle != this.steamIDLobby || !entered) {
+			return;
+		}
+
+		long steamIDUser = steamIDUserChanged.handle;
+
+		if (stateChange == SteamMatchmaking.ChatMemberStateChange.Entered) {
+			if (members.add(steamIDUser)) {
+				onJoined(steamIDUser);
+			} else {
+				inconsistent = true;
+			}
+		} else {
+			if (members.remove(steamIDUser)) {
+				onLeft(steamIDUser);
+			} else if (!polledLeft.contains(steamIDUser) && !left.contains(steamIDUser)) {
+				// several state bits are reported as separate callbacks, only the first one removes the user
+				inconsistent = true;
+			}
+		}
+	}
+
+	/**
+	 * Checks the member list for consistency, resyncing it if needed, and makes the changes since the
+	 * last poll available through {@link SteamLobbyRoster#getNumJoined()} and
+	 * {@link SteamLobbyRoster#getNumLeft()}.
+	 */
+	public void poll() {
+		if (entered && (inconsistent || matchmaking.getNumLobbyMembers(steamIDLobby) != members.size())) {
+			resync();
+		}
+
+		polledJoined.clear();
+		polledLeft.clear();
+
+		for (int i = 0; i < joined.size(); i++) {
+			polledJoined.add(joined.get(i));
+		}
+
+		for (int i = 0; i < left.size(); i++) {
+			polledLeft.add(left.get(i));
+		}
+
+		joined.clear();
+		left.clear();
+	}
+
+	/**
+	 * Stops tracking the lobby, e.g. after leaving it. All members are reported as left on the next poll.
+	 */
+	public void reset() {
+		for (int i = 0; i < members.size(); i++) {
+			onLeft(members.get(i));
+		}
+		members.clear();
+		entered = false;
+		inconsistent = false;
+	}
+
+	public long getSteamIDLobby() {
+		return steamIDLobby;
+	}
+
+	public int getNumMembers() {
+		return members.size();
+	}
+
+	public long getMember(int index) {
+		return members.get(index);
+	}
+
+	public boolean contains(long steamIDUser) {
+		return members.contains(steamIDUser);
+	}
+
+	/**
+	 * Returns the number of members who joined between the last two polls.
+	 */
+	public int getNumJoined() {
+		return polledJoined.size();
+	}
+
+	public long getJoined(int index) {
+		return polledJoined.get(index);
+	}
+
+	/**
+	 * Returns the number of members who left between the last two polls.
+	 */
+	public int getNumLeft() {
+		return polledLeft.size();
+	}
+
+	public long getLeft(int index) {
+		return polledLeft.get(index);
+	}
+
+	/**
+	 * Returns the number of times the member list has been read from Steam.
+	 */
+	public long getNumResyncs() {
+		return numResyncs;
+	}
+
+	private void resync() {
+		int count;
+		while ((count = matchmaking.getLobbyMembers(steamIDLobby, resyncBuffer)) > resyncBuffer.length) {
+			resyncBuffer = new long[count * 2];
+		}
+
+		resyncMembers.clear();
+		for (int i = 0; i < count; i++) {
+			resyncMembers.add(resyncBuffer[i]);
+		}
+
+		for (int i = members.size() - 1; i >= 0; i--) {
+			long steamIDUser = members.get(i);
+			if (!resyncMembers.contains(steamIDUser)) {
+				members.remove(steamIDUser);
+				onLeft(steamIDUser);
+			}
+		}
+
+		for (int i = 0; i < resyncMembers.size(); i++) {
+			long steamIDUser = resyncMembers.get(i);
+			if (members.add(steamIDUser)) {
+				onJoined(steamIDUser);
+			}
+		}
+
+		inconsistent = false;
+		numResyncs++;
+	}
+
+	private void onJoined(long steamIDUser) {
+		// a user who left and came back between two polls is reported as neither
+		if (!left.remove(steamIDUser)) {
+			joined.add(steamIDUser);
+		}
+	}
+
+	private void onLeft(long steamIDUser) {
+		if (!joined.remove(steamIDUser)) {
+			left.add(steamIDUser);
+		}
+	}
+
+}
@@ -0,0 +1,300 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a copy of the key/value data of lobbies, and reports which keys changed.
+ * <p>
+ * Forward {@link SteamMatchmakingCallback#onLobbyDataUpdate(SteamID, SteamID, boolean)} to
+ * {@link SteamLobbyStateMirror#onLobbyDataUpdate(SteamID, SteamID, boolean)}, or call
+ * {@link SteamLobbyStateMirror#update(long)} directly. Each update reads all data of a lobby with one call
+ * to {@link SteamMatchmaking#getAllLobbyData(long, ByteBuffer)}, compares it byte by byte with the
+ * previous state, and only decodes strings for keys and values which changed. Keys are looked up by a
+ * hash of their bytes, so there's no need to decode them either. Keys are interned, and shared by all
+ * lobbies.
+ * <p>
+ * Member data updates are ignored. This class is not thread safe.
+ */
+public class SteamLobbyStateMirror {
+
+	public interface Listener {
+
+		/**
+		 * Called for each changed key. The old value is <code>null</code> for new keys, and the new value
+		 * is <code>null</code> for removed keys.
+		 */
+		void onLobbyDataChanged(long steamIDLobby, String key, String oldValue, String newValue);
+
+	}
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int MaxBufferSize = 16 * 1024 * 1024;
+
+	private static class Entry {
+		final String key;
+		final byte[] keyBytes;
+		final long keyHash;
+		Entry nextWithHash;
+		String value;
+		byte[] valueBytes;
+		boolean seen;
+
+		Entry(String key, byte[] keyBytes, long keyHash) {
+			this.key = key;
+			this.keyBytes = keyBytes;
+			this.keyHash = keyHash;
+		}
+	}
+
+	private static class Lobby {
+		final List<Entry> entries = new ArrayList<Entry>();
+		final Map<String, Entry> entriesByKey = new HashMap<String, Entry>();
+		// entries with the same key hash are chained with Entry.nextWithHash
+		final SteamLongMap<Entry> entriesByHash = new SteamLongMap<Entry>();
+
+		Entry find(long keyHash) {
+			return entriesByHash.get(keyHash);
+		}
+
+		void add(Entry entry) {
+			entries.add(entry);
+			entriesByKey.put(entry.key, entry);
+			entry.nextWithHash = entriesByHash.put(entry.keyHash, entry);
+		}
+
+		void unlink(Entry entry) {
+			entriesByKey.remove(entry.key);
+			Entry first = entriesByHash.get(entry.keyHash);
+			if (first == entry) {
+				if (entry.nextWithHash != null) {
+					entriesByHash.put(entry.keyHash, entry.nextWithHash);
+				} else {
+					entriesByHash.remove(entry.keyHash);
+				}
+			} else {
+				while (first.nextWithHash != entry) {
+					first = first.nextWithHash;
+				}
+				first.nextWithHash = entry.nextWithHash;
+			}
+		}
+	}
+
+	private final SteamMatchmaking matchmaking;
+	private final Listener listener;
+
+	private final SteamLongMap<Lobby> lobbies = new SteamLongMap<Lobby>();
+	private final Map<String, String> internedKeys = new HashMap<String, String>();
+
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(16 * 1024);
+
+	private long numUpdates;
+	private long numChanges;
+
+	public SteamLobbyStateMirror(SteamMatchmaking matchmaking, Listener listener) {
+		this.matchmaking = matchmaking;
+		this.listener = listener;
+	}
+
+	/**
+	 * Updates the mirror of a lobby. To be called from the matchmaking callback.
+	 */
+	public void onLobbyDataUpdate(SteamID steamIDLobby, SteamID steamIDMember, boolean success) throws SteamException {
+		if (success && steamIDLobby.handle == steamIDMember.handle) {
+			update(steamIDLobby.handle);
+		}
+	}
+
+	/**
+	 * Reads the data of a lobby, addressed by a native handle as returned by
+	 * {@link SteamNativeHandle#getNativeHandle(SteamNativeHandle)}, and reports changes to the listener.
+	 *
+	 * Returns the number of changed keys.
+	 */
+	public int update(long steamIDLobby) throws SteamException {
+		int count;
+
+		buffer.clear();
+		while ((count = matchmaking.getAllLobbyData(steamIDLobby, buffer)) < 0) {
+			if (buffer.capacity() >= MaxBufferSize) {
+				throw new SteamException("Lobby data exceeds " + MaxBufferSize + " bytes.");
+			}
+			buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+		}
+
+		Lobby lobby = lobbies.get(steamIDLobby);
+		if (lobby == null) {
+			lobby = new Lobby();
+			lobbies.put(steamIDLobby, lobby);
+		}
+
+		List<Entry> entries = lobby.entries;
+		for (int i = 0; i < entries.size(); i++) {
+			entries.get(i).seen = false;
+		}
+
+		int changes = 0;
+		int position = 0;
+
+		for (int pair = 0; pair < count; pair++) {
+			int keyStart = position;
+			int keyEnd = findNull(keyStart);
+			int valueStart = keyEnd + 1;
+			int valueEnd = findNull(valueStart);
+			position = valueEnd + 1;
+
+			if (keyEnd == keyStart) {
+				continue;
+			}
+
+			long keyHash = hash(keyStart, keyEnd);
+
+			Entry entry = lobby.find(keyHash);
+			while (entry != null && !equals(entry.keyBytes, keyStart, keyEnd)) {
+				entry = entry.nextWithHash;
+			}
+
+			if (entry == null) {
+				byte[] keyBytes = copy(keyStart, keyEnd);
+				String key = intern(new String(keyBytes, UTF8));
+				entry = new Entry(key, keyBytes, keyHash);
+				lobby.add(entry);
+			} else if (equals(entry.valueBytes, valueStart, valueEnd)) {
+				entry.seen = true;
+				continue;
+			}
+
+			String oldValue = entry.value;
+			entry.valueBytes = copy(valueStart, valueEnd);
+			entry.value = new String(entry.valueBytes, UTF8);
+			entry.seen = true;
+
+			changes++;
+			if (listener != null) {
+				listener.onLobbyDataChanged(steamIDLobby, entry.key, oldValue, entry.value);
+			}
+		}
+
+		// compact in one pass, keeping the order of the remaining entries
+		int kept = 0;
+		for (int i = 0; i < entries.size(); i++) {
+			Entry entry = entries.get(i);
+			if (entry.seen) {
+				entries.set(kept++, entry);
+			} else {
+				lobby.unlink(entry);
+
+				changes++;
+				if (listener != null) {
+					listener.onLobbyDataChanged(steamIDLobby, entry.key, entry.value, null);
+				}
+			}
+		}
+		for (int i = entries.size() - 1; i >= kept; i--) {
+			entries.remove(i);
+		}
+
+		numUpdates++;
+		numChanges += changes;
+		return changes;
+	}
+
+	/**
+	 * Returns the mirrored value of a key, or <code>null</code>.
+	 */
+	public String getLobbyData(long steamIDLobby, String key) {
+		Lobby lobby = lobbies.get(steamIDLobby);
+		if (lobby == null) {
+			return null;
+		}
+		Entry entry = lobby.entriesByKey.get(key);
+		return entry != null ? entry.value : null;
+	}
+
+	public int getLobbyDataCount(long steamIDLobby) {
+		Lobby lobby = lobbies.get(steamIDLobby);
+		return lobby != null ? lobby.entries.size() : 0;
+	}
+
+	public String getLobbyDataKey(long steamIDLobby, int index) {
+		return lobbies.get(steamIDLobby).entries.get(index).key;
+	}
+
+	public String getLobbyDataValue(long steamIDLobby, int index) {
+		return lobbies.get(steamIDLobby).entries.get(index).value;
+	}
+
+	public boolean contains(long steamIDLobby) {
+		return lobbies.containsKey(steamIDLobby);
+	}
+
+	/**
+	 * Stops mirroring a lobby, e.g. after leaving it.
+	 */
+	public void remove(long steamIDLobby) {
+		lobbies.remove(steamIDLobby);
+	}
+
+	public long getNumUpdates() {
+		return numUpdates;
+	}
+
+	/**
+	 * Returns the number of key changes reported.
+	 */
+	public long getNumChanges() {
+		return numChanges;
+	}
+
+	private String intern(String key) {
+		String interned = internedKeys.get(key);
+		if (interned == null) {
+			internedKeys.put(key, key);
+			interned = key;
+		}
+		return interned;
+	}
+
+	private long hash(int start, int end) {
+		// 64 bit FNV-1a, only used to find candidates for a byte compare
+		long hash = 0xcbf29ce484222325L;
+		for (int i = start; i < end; i++) {
+			hash ^= buffer.get(i) & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private int findNull(int position) {
+		while (buffer.get(position) != 0) {
+			position++;
+		}
+		return position;
+	}
+
+	private boolean equals(byte[] bytes, int start, int end) {
+		if (bytes == null || bytes.length != end - start) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] != buffer.get(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private byte[] copy(int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,160 @@
+package com.codedisaster.steamworks;
+
+/**
+ * Open addressing hash map with primitive long keys, used to look up per-user state by native
+ * {@link SteamID} handles without boxing. Null values are not allowed.
+ *
+ * Entries can be iterated by slot, from 0 to {@link SteamLongMap#capacity()}, skipping empty
+ * slots, for which {@link SteamLongMap#valueAt(int)} returns <code>null</code>.
+ */
+class SteamLongMap<V> {
+
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size;
+
+	SteamLongMap() {
+		this(16);
+	}
+
+	SteamLongMap(int expectedSize) {
+		int capacity = 8;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	V get(long key) {
+		int slot = hash(key) & mask;
+		Object value;
+		while ((value = values[slot]) != null) {
+			if (keys[slot] == key) {
+				return (V) value;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	V put(long key, V value) {
+		if (value == null) {
+			throw new NullPointerException("Null values not allowed.");
+		}
+
+		int slot = hash(key) & mask;
+		Object previous;
+		while ((previous = values[slot]) != null) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return (V) previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+
+		if (++size > (mask + 1) / 2) {
+			rehash((mask + 1) * 2);
+		}
+
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	V remove(long key) {
+		int slot = hash(key) & mask;
+		Object value;
+		while ((value = values[slot]) != null) {
+			if (keys[slot] == key) {
+				removeSlot(slot);
+				return (V) value;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	void clear() {
+		for (int i = 0; i < values.length; i++) {
+			values[i] = null;
+		}
+		size = 0;
+	}
+
+	int capacity() {
+		return values.length;
+	}
+
+	long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	@SuppressWarnings("unchecked")
+	V valueAt(int slot) {
+		return (V) values[slot];
+	}
+
+	private void removeSlot(int slot) {
+		// shift back entries of the same probe sequence, so lookups don't need tombstones
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while (values[next] != null) {
+			int home = hash(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				values[gap] = values[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		values[gap] = null;
+		size--;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		allocate(capacity);
+
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int slot = hash(oldKeys[i]) & mask;
+				while (values[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	static int hash(long key) {
+		long h = key * 0x9e3779b97f4a7c15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
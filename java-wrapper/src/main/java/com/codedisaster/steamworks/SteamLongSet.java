@@ -0,0 +1,156 @@
+package com.codedisaster.steamworks;
+
+/**
+ * Open addressing hash set of primitive longs, used to track sets of users by native {@link SteamID}
+ * handles without boxing.
+ *
+ * Elements are stored densely, and can be iterated by index, from 0 to {@link SteamLongSet#size()}.
+ * Removing an element moves the last element into its place.
+ */
+class SteamLongSet {
+
+	private long[] elements;
+	private int size;
+
+	/**
+	 * Index + 1 of the element hashed to each slot, or 0 for empty slots.
+	 */
+	private int[] slots;
+	private int mask;
+
+	SteamLongSet() {
+		this(16);
+	}
+
+	SteamLongSet(int expectedSize) {
+		int capacity = 8;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		elements = new long[capacity / 2];
+		allocate(capacity);
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	long get(int index) {
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of range.");
+		}
+		return elements[index];
+	}
+
+	boolean contains(long element) {
+		return find(element) >= 0;
+	}
+
+	/**
+	 * Returns false if the element has been in the set already.
+	 */
+	boolean add(long element) {
+		int slot = SteamLongMap.hash(element) & mask;
+		int index;
+		while ((index = slots[slot]) != 0) {
+			if (elements[index - 1] == element) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if (size == elements.length) {
+			long[] resized = new long[size * 2];
+			System.arraycopy(elements, 0, resized, 0, size);
+			elements = resized;
+		}
+
+		elements[size++] = element;
+		slots[slot] = size;
+
+		if (size > (mask + 1) / 2) {
+			rehash((mask + 1) * 2);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns false if the element hasn't been in the set.
+	 */
+	boolean remove(long element) {
+		int slot = find(element);
+		if (slot < 0) {
+			return false;
+		}
+
+		int index = slots[slot] - 1;
+		removeSlot(slot);
+
+		int last = --size;
+		if (index != last) {
+			// move the last element into the gap
+			long moved = elements[last];
+			elements[index] = moved;
+			slots[find(moved)] = index + 1;
+		}
+
+		return true;
+	}
+
+	void clear() {
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = 0;
+		}
+		size = 0;
+	}
+
+	private int find(long element) {
+		int slot = SteamLongMap.hash(element) & mask;
+		int index;
+		while ((index = slots[slot]) != 0) {
+			if (elements[index - 1] == element) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void removeSlot(int slot) {
+		// shift back entries of the same probe sequence, so lookups don't need tombstones
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while (slots[next] != 0) {
+			int home = SteamLongMap.hash(elements[slots[next] - 1]) & mask;
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				slots[gap] = slots[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		slots[gap] = 0;
+	}
+
+	private void rehash(int capacity) {
+		allocate(capacity);
+
+		for (int i = 0; i < size; i++) {
+			int slot = SteamLongMap.hash(elements[i]) & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = i + 1;
+		}
+	}
+
+	private void allocate(int capacity) {
+		slots = new int[capacity];
+		mask = capacity - 1;
+	}
+
+}
@@ -129,8 +129,20 @@ public class SteamMatchmaking extends SteamInterface {
 		}
 	}
 
+	private SteamMatchmakingCallbackAdapter callbackAdapter;
+
 	public SteamMatchmaking(SteamMatchmakingCallback callback) {
-		super(SteamAPI.getSteamMatchmakingPointer(), createCallback(new SteamMatchmakingCallbackAdapter(callback)));
+		super(SteamAPI.getSteamMatchmakingPointer());
+		callbackAdapter = new SteamMatchmakingCallbackAdapter(callback);
+		setCallback(createCallback(callbackAdapter));
+	}
+
+	/**
+	 * Queues callbacks in a {@link SteamCallbackQueue} instead of invoking them directly. Pass
+	 * <code>null</code> to switch back to direct callbacks.
+	 */
+	public void setCallbackQueue(SteamCallbackQueue queue) {
+		setCallbackQueue(callbackAdapter, queue);
 	}
 
 	public int getFavoriteGameCount() {
@@ -190,6 +202,43 @@ public class SteamMatchmaking extends SteamInterface {
 		return new SteamID(getLobbyByIndex(pointer, lobby));
 	}
 
+	/**
+	 * Reads the IDs of all lobbies of the last lobby list, and the values of a set of keys for each of them,
+	 * with one native call. Call this after {@link SteamMatchmakingCallback#onLobbyMatchList(int)}.
+	 */
+	public SteamLobbyListSnapshot getLobbyListSnapshot(String[] keys) {
+		SteamLobbyListSnapshot snapshot = new SteamLobbyListSnapshot();
+		getLobbyListSnapshot(keys, snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * Same as {@link SteamMatchmaking#getLobbyListSnapshot(String[])}, but reuses an existing snapshot.
+	 * Returns the number of lobbies.
+	 */
+	public int getLobbyListSnapshot(String[] keys, SteamLobbyListSnapshot snapshot) {
+		snapshot.setKeys(keys);
+
+		int numLobbies;
+		while (true) {
+			int maxLobbies = snapshot.getMaxLobbies();
+
+			numLobbies = getLobbyListSnapshot(pointer, maxLobbies, snapshot.packedKeys, keys.length,
+					snapshot.lobbyIDs, snapshot.values, snapshot.data, snapshot.data.capacity());
+
+			if (numLobbies < 0) {
+				snapshot.growData();
+			} else if (numLobbies == maxLobbies) {
+				snapshot.growLobbies();
+			} else {
+				break;
+			}
+		}
+
+		snapshot.reset(numLobbies);
+		return numLobbies;
+	}
+
 	public SteamAPICall createLobby(LobbyType lobbyType, int maxMembers) {
 		return new SteamAPICall(createLobby(pointer, callback, lobbyType.ordinal(), maxMembers));
 	}
@@ -214,6 +263,22 @@ public class SteamMatchmaking extends SteamInterface {
 		return new SteamID(getLobbyMemberByIndex(pointer, steamIDLobby.handle, memberIndex));
 	}
 
+	/**
+	 * Reads the native handles of all lobby members into an array, with one native call. Returns the number
+	 * of members, which can be larger than the array.
+	 */
+	public int getLobbyMembers(SteamID steamIDLobby, long[] steamIDMembers) {
+		return getLobbyMembers(steamIDLobby.handle, steamIDMembers);
+	}
+
+	int getLobbyMembers(long steamIDLobby, long[] steamIDMembers) {
+		return getLobbyMembers(pointer, steamIDLobby, steamIDMembers, steamIDMembers.length);
+	}
+
+	int getNumLobbyMembers(long steamIDLobby) {
+		return getNumLobbyMembers(pointer, steamIDLobby);
+	}
+
 	public String getLobbyData(SteamID steamIDLobby, String key) {
 		return getLobbyData(pointer, steamIDLobby.handle, key);
 	}
@@ -235,6 +300,31 @@ public class SteamMatchmaking extends SteamInterface {
 		return getLobbyDataByIndex(pointer, steamIDLobby.handle, lobbyDataIndex, keyValuePair);
 	}
 
+	/**
+	 * Reads all key/value pairs of a lobby into a direct {@link ByteBuffer} with one native call.
+	 *
+	 * Pairs are stored back to back, starting at <code>dest.position()</code>, as null-terminated UTF-8 key
+	 * and value. The buffer state isn't changed.
+	 *
+	 * Returns the number of pairs, or -1 if the buffer is too small.
+	 */
+	public int getAllLobbyData(SteamID steamIDLobby, ByteBuffer dest) throws SteamException {
+		return getAllLobbyData(steamIDLobby.handle, dest);
+	}
+
+	/**
+	 * Same as {@link SteamMatchmaking#getAllLobbyData(SteamID, ByteBuffer)}, with the lobby addressed by a
+	 * native handle, as returned by {@link SteamNativeHandle#getNativeHandle(SteamNativeHandle)}.
+	 */
+	public int getAllLobbyData(long steamIDLobby, ByteBuffer dest) throws SteamException {
+
+		if (!dest.isDirect()) {
+			throw new SteamException("Direct buffer required!");
+		}
+
+		return getAllLobbyData(pointer, steamIDLobby, dest, dest.position(), dest.remaining());
+	}
+
 	public boolean deleteLobbyData(SteamID steamIDLobby, String key) {
 		return deleteLobbyData(pointer, steamIDLobby.handle, key);
 	}
@@ -255,6 +345,22 @@ public class SteamMatchmaking extends SteamInterface {
 		return sendLobbyChatMsg(pointer, steamIDLobby.handle, data);
 	}
 
+	boolean sendLobbyChatMsg(long steamIDLobby, ByteBuffer data, int offset, int size) {
+		return sendLobbyChatMsg(pointer, steamIDLobby, data, offset, size);
+	}
+
+	/**
+	 * Starts reading the chat messages of a lobby into a {@link SteamLobbyChatRing}. Rings must be removed
+	 * before this interface is disposed.
+	 */
+	public void addLobbyChatRing(SteamLobbyChatRing ring) {
+		addLobbyChatRing(callback, ring.getPointer());
+	}
+
+	public void removeLobbyChatRing(SteamLobbyChatRing ring) {
+		removeLobbyChatRing(callback, ring.getPointer());
+	}
+
 	/**
 	 * Read incoming chat entry into a {@link com.codedisaster.steamworks.SteamMatchmaking.ChatEntry} structure,
 	 * and a direct {@link ByteBuffer}.
@@ -405,6 +511,43 @@ public class SteamMatchmaking extends SteamInterface {
 		return (int64) steamID.ConvertToUint64();
 	*/
 
+	private static native int getLobbyListSnapshot(long pointer, int maxLobbies, ByteBuffer keys, int numKeys,
+												   long[] lobbyIDs, int[] values, ByteBuffer dest, int size); /*
+		ISteamMatchmaking* matchmaking = (ISteamMatchmaking*) pointer;
+		int written = 0;
+		int lobby = 0;
+
+		for (; lobby < maxLobbies; lobby++) {
+			CSteamID steamIDLobby = matchmaking->GetLobbyByIndex(lobby);
+			if (!steamIDLobby.IsValid()) {
+				break;
+			}
+
+			lobbyIDs[lobby] = (jlong) steamIDLobby.ConvertToUint64();
+
+			const char* key = keys;
+			for (int k = 0; k < numKeys; k++) {
+				const char* value = matchmaking->GetLobbyData(steamIDLobby, key);
+				int length = (int) strlen(value);
+
+				if (written + length + 1 > size) {
+					return -1;
+				}
+
+				memcpy(&dest[written], value, length + 1);
+
+				int index = (lobby * numKeys + k) * 2;
+				values[index] = written;
+				values[index + 1] = length;
+
+				written += length + 1;
+				key += strlen(key) + 1;
+			}
+		}
+
+		return lobby;
+	*/
+
 	private static native long createLobby(long pointer, long callback, int lobbyType, int maxMembers); /*
 		ISteamMatchmaking* matchmaking = (ISteamMatchmaking*) pointer;
 		SteamAPICall_t handle = matchmaking->CreateLobby((ELobbyType) lobbyType, maxMembers);
@@ -442,6 +585,17 @@ public class SteamMatchmaking extends SteamInterface {
 		return (int64) steamID.ConvertToUint64();
 	*/
 
+	private static native int getLobbyMembers(long pointer, long steamIDLobby,
+											  long[] steamIDMembers, int capacity); /*
+		ISteamMatchmaking* matchmaking = (ISteamMatchmaking*) pointer;
+		int count = matchmaking->GetNumLobbyMembers((uint64) steamIDLobby);
+		for (int i = 0; i < count && i < capacity; i++) {
+			CSteamID steamID = matchmaking->GetLobbyMemberByIndex((uint64) steamIDLobby, i);
+			steamIDMembers[i] = (jlong) steamID.ConvertToUint64();
+		}
+		return count;
+	*/
+
 	private static native String getLobbyData(long pointer, long steamIDLobby, String key); /*
 		ISteamMatchmaking* matchmaking = (ISteamMatchmaking*) pointer;
 		jstring value = env->NewStringUTF(matchmaking->GetLobbyData((uint64) steamIDLobby, key));
@@ -478,6 +632,37 @@ public class SteamMatchmaking extends SteamInterface {
 		return success;
 	*/
 
+	private static native int getAllLobbyData(long pointer, long steamIDLobby,
+											  ByteBuffer dest, int offset, int size); /*
+		ISteamMatchmaking* matchmaking = (ISteamMatchmaking*) pointer;
+		char key[256];
+		char value[8192];
+
+		int count = matchmaking->GetLobbyDataCount((uint64) steamIDLobby);
+		int written = 0;
+
+		for (int i = 0; i < count; i++) {
+			if (!matchmaking->GetLobbyDataByIndex((uint64) steamIDLobby, i, key, sizeof(key), value, sizeof(value))) {
+				key[0] = '\0';
+				value[0] = '\0';
+			}
+
+			int keyLength = (int) strlen(key) + 1;
+			int valueLength = (int) strlen(value) + 1;
+
+			if (written + keyLength + valueLength > size) {
+				return -1;
+			}
+
+			memcpy(&dest[offset + written], key, keyLength);
+			written += keyLength;
+			memcpy(&dest[offset + written], value, valueLength);
+			written += valueLength;
+		}
+
+		return count;
+	*/
+
 	private static native boolean deleteLobbyData(long pointer, long steamIDLobby, String key); /*
 		ISteamMatchmaking* matchmaking = (ISteamMatchmaking*) pointer;
 		return matchmaking->DeleteLobbyData((uint64) steamIDLobby, key);
@@ -495,6 +680,16 @@ public class SteamMatchmaking extends SteamInterface {
 		return matchmaking->SendLobbyChatMsg((uint64) steamIDLobby, message, len);
 	*/
 
+	private static native void addLobbyChatRing(long callback, long ring); /*
+		SteamMatchmakingCallback* cb = (SteamMatchmakingCallback*) callback;
+		cb->addChatRing((SteamLobbyChatRing*) ring);
+	*/
+
+	private static native void removeLobbyChatRing(long callback, long ring); /*
+		SteamMatchmakingCallback* cb = (SteamMatchmakingCallback*) callback;
+		cb->removeChatRing((SteamLobbyChatRing*) ring);
+	*/
+
 	private static native int getLobbyChatEntry(long pointer, long steamIDLobby, int chatID, ChatEntry chatEntry,
 												ByteBuffer buffer, int offset, int size); /*
 		ISteamMatchmaking* matchmaking = (ISteamMatchmaking*) pointer;
@@ -1,15 +1,47 @@
 package com.codedisaster.steamworks;
 
+import java.nio.ByteBuffer;
+
 @SuppressWarnings("unused")
 class SteamMatchmakingCallbackAdapter extends SteamCallbackAdapter<SteamMatchmakingCallback> {
 
 	private static final SteamMatchmaking.ChatMemberStateChange[] stateChangeValues =
 			SteamMatchmaking.ChatMemberStateChange.values();
 
+	// event types of queued records, must match SteamMatchmakingCallback.cpp
+	private static final int LobbyInviteEvent = 1;
+	private static final int LobbyKickedEvent = 2;
+	private static final int LobbyDataUpdateEvent = 3;
+	private static final int LobbyChatUpdateEvent = 4;
+	private static final int LobbyChatMsgEvent = 5;
+
 	SteamMatchmakingCallbackAdapter(SteamMatchmakingCallback callback) {
 		super(callback);
 	}
 
+	@Override
+	void onQueuedEvent(int eventType, ByteBuffer data, int offset) {
+		switch (eventType) {
+			case LobbyInviteEvent:
+				onLobbyInvite(data.getLong(offset), data.getLong(offset + 8), data.getLong(offset + 16));
+				break;
+			case LobbyKickedEvent:
+				onLobbyKicked(data.getLong(offset), data.getLong(offset + 8), data.getInt(offset + 16) != 0);
+				break;
+			case LobbyDataUpdateEvent:
+				onLobbyDataUpdate(data.getLong(offset), data.getLong(offset + 8), data.getInt(offset + 16) != 0);
+				break;
+			case LobbyChatUpdateEvent:
+				onLobbyChatUpdate(data.getLong(offset), data.getLong(offset + 8),
+						data.getLong(offset + 16), data.getInt(offset + 24));
+				break;
+			case LobbyChatMsgEvent:
+				onLobbyChatMessage(data.getLong(offset), data.getLong(offset + 8),
+						data.getInt(offset + 16), data.getInt(offset + 20));
+				break;
+		}
+	}
+
 	void onFavoritesListChanged(int ip, int queryPort, int connPort, int appID, int flags, boolean add, int accountID) {
 		callback.onFavoritesListChanged(ip, queryPort, connPort, appID, flags, add, accountID);
 	}
@@ -68,16 +68,239 @@ public class SteamNetworking extends SteamInterface {
 		}
 	}
 
+	/**
+	 * Session states of many users, stored as one primitive array per field. Filled by
+	 * {@link SteamNetworking#getP2PSessionStates(long[], int, P2PSessionStates)}, and meant to be reused.
+	 */
+	public static class P2PSessionStates {
+		final boolean[] valid;
+		final byte[] connectionActive;
+		final byte[] connecting;
+		final byte[] sessionError;
+		final byte[] usingRelay;
+		final int[] bytesQueuedForSend;
+		final int[] packetsQueuedForSend;
+		final int[] remoteIP;
+		final short[] remotePort;
+		int count;
+
+		public P2PSessionStates(int capacity) {
+			valid = new boolean[capacity];
+			connectionActive = new byte[capacity];
+			connecting = new byte[capacity];
+			sessionError = new byte[capacity];
+			usingRelay = new byte[capacity];
+			bytesQueuedForSend = new int[capacity];
+			packetsQueuedForSend = new int[capacity];
+			remoteIP = new int[capacity];
+			remotePort = new short[capacity];
+		}
+
+		public int getCapacity() {
+			return valid.length;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns false if there's no session with this user. All other fields are invalid in this case.
+		 */
+		public boolean isValid(int user) {
+			return valid[user];
+		}
+
+		public boolean isConnectionActive(int user) {
+			return connectionActive[user] != 0;
+		}
+
+		public boolean isConnecting(int user) {
+			return connecting[user] != 0;
+		}
+
+		public P2PSessionError getLastSessionError(int user) {
+			return P2PSessionError.byOrdinal(sessionError[user]);
+		}
+
+		public boolean isUsingRelay(int user) {
+			return usingRelay[user] != 0;
+		}
+
+		public int getBytesQueuedForSend(int user) {
+			return bytesQueuedForSend[user];
+		}
+
+		public int getPacketsQueuedForSend(int user) {
+			return packetsQueuedForSend[user];
+		}
+
+		public int getRemoteIP(int user) {
+			return remoteIP[user];
+		}
+
+		public short getRemotePort(int user) {
+			return remotePort[user];
+		}
+	}
+
+	/**
+	 * Packet index filled by {@link SteamNetworking#readP2PPackets(ByteBuffer, int, P2PPacketBatch)}. Instances
+	 * are meant to be reused for each read.
+	 */
+	public static class P2PPacketBatch {
+		final int[] offsets;
+		final int[] sizes;
+		final long[] steamIDs;
+		int count;
+
+		public P2PPacketBatch(int capacity) {
+			offsets = new int[capacity];
+			sizes = new int[capacity];
+			steamIDs = new long[capacity];
+		}
+
+		public int getCapacity() {
+			return offsets.length;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the absolute position of a packet's first byte in the buffer passed to readP2PPackets().
+		 */
+		public int getOffset(int packet) {
+			return offsets[packet];
+		}
+
+		public int getSize(int packet) {
+			return sizes[packet];
+		}
+
+		/**
+		 * Returns the sender's ID as a native handle, see {@link SteamID#createFromNativeHandle(long)}.
+		 */
+		public long getSteamIDHandle(int packet) {
+			return steamIDs[packet];
+		}
+
+		/**
+		 * Writes the sender's ID into an existing {@link SteamID} instance.
+		 */
+		public void getSteamID(int packet, SteamID steamIDRemote) {
+			steamIDRemote.handle = steamIDs[packet];
+		}
+	}
+
+	/**
+	 * List of packets to send with {@link SteamNetworking#sendP2PPackets(ByteBuffer, P2PSendBatch)}. All
+	 * packets refer to ranges of one direct buffer. Instances are meant to be cleared and reused.
+	 */
+	public static class P2PSendBatch {
+		final long[] steamIDs;
+		final int[] offsets;
+		final int[] sizes;
+		final int[] sendTypes;
+		final int[] channels;
+		final long[] results;
+		int count;
+
+		public P2PSendBatch(int capacity) {
+			steamIDs = new long[capacity];
+			offsets = new int[capacity];
+			sizes = new int[capacity];
+			sendTypes = new int[capacity];
+			channels = new int[capacity];
+			results = new long[(capacity + 63) / 64];
+		}
+
+		/**
+		 * Adds a packet to the batch. The offset is an absolute position in the buffer passed to sendP2PPackets().
+		 *
+		 * Returns the index of the packet in this batch.
+		 */
+		public int add(SteamID steamIDRemote, int offset, int size, P2PSend sendType, int channel) {
+			return add(steamIDRemote.handle, offset, size, sendType, channel);
+		}
+
+		/**
+		 * Adds a packet to the batch, addressed by a native handle as returned by
+		 * {@link SteamNativeHandle#getNativeHandle(SteamNativeHandle)}.
+		 */
+		public int add(long steamIDRemote, int offset, int size, P2PSend sendType, int channel) {
+			if (count == steamIDs.length) {
+				throw new IndexOutOfBoundsException("P2PSendBatch is full, capacity: " + steamIDs.length);
+			}
+			steamIDs[count] = steamIDRemote;
+			offsets[count] = offset;
+			sizes[count] = size;
+			sendTypes[count] = sendType.ordinal();
+			channels[count] = channel;
+			return count++;
+		}
+
+		public void clear() {
+			count = 0;
+		}
+
+		public int getCapacity() {
+			return steamIDs.length;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns if the packet has been sent successfully by the last call to sendP2PPackets().
+		 */
+		public boolean isSent(int packet) {
+			return (results[packet >> 6] & (1L << (packet & 63))) != 0;
+		}
+
+		/**
+		 * Returns the success bitmap of the last call to sendP2PPackets(), one bit per packet.
+		 */
+		public long[] getResults() {
+			return results;
+		}
+	}
+
 	private final int[] tmpIntResult = new int[1];
 	private final long[] tmpLongResult = new long[1];
+	private final long[] emptyMask = new long[0];
+
+	private final SteamNetworkingCallbackAdapter callbackAdapter;
 
 	public SteamNetworking(SteamNetworkingCallback callback) {
-		this(SteamAPI.getSteamNetworkingPointer(),
-				createCallback(new SteamNetworkingCallbackAdapter(callback)));
+		this(SteamAPI.getSteamNetworkingPointer(), new SteamNetworkingCallbackAdapter(callback));
+	}
+
+	private SteamNetworking(long pointer, SteamNetworkingCallbackAdapter callbackAdapter) {
+		super(pointer, createCallback(callbackAdapter));
+		this.callbackAdapter = callbackAdapter;
 	}
 
 	SteamNetworking(long pointer, long callback) {
 		super(pointer, callback);
+		this.callbackAdapter = null;
+	}
+
+	/**
+	 * Queues callbacks in a {@link SteamCallbackQueue} instead of invoking them directly. Pass
+	 * <code>null</code> to switch back to direct callbacks.
+	 *
+	 * This is not supported by {@link SteamNetworking} instances created by the game server API.
+	 */
+	public void setCallbackQueue(SteamCallbackQueue queue) throws SteamException {
+
+		if (callbackAdapter == null) {
+			throw new SteamException("Callback queue not supported by this interface.");
+		}
+
+		setCallbackQueue(callbackAdapter, queue);
 	}
 
 	public boolean sendP2PPacket(SteamID steamIDRemote, ByteBuffer data,
@@ -91,6 +314,72 @@ public class SteamNetworking extends SteamInterface {
 				data.position(), data.remaining(), sendType.ordinal(), channel);
 	}
 
+	/**
+	 * Sends all packets of a batch with one native call. Per packet results are stored in the batch,
+	 * see {@link P2PSendBatch#isSent(int)}.
+	 *
+	 * Returns the number of packets sent successfully.
+	 */
+	public int sendP2PPackets(ByteBuffer data, P2PSendBatch batch) throws SteamException {
+
+		if (!data.isDirect()) {
+			throw new SteamException("Direct buffer required!");
+		}
+
+		for (int i = 0; i < batch.count; i++) {
+			int offset = batch.offsets[i];
+			if (offset < 0 || batch.sizes[i] < 0 || offset + batch.sizes[i] > data.limit()) {
+				throw new SteamException("Packet " + i + " exceeds buffer limit.");
+			}
+		}
+
+		return sendP2PPackets(pointer, data, batch.count, batch.steamIDs, batch.offsets, batch.sizes,
+				batch.sendTypes, batch.channels, batch.results);
+	}
+
+	/**
+	 * Sends the same packet to a list of users, passed as native handles, with one native call.
+	 *
+	 * Returns the number of users the packet has been sent to successfully.
+	 *
+	 * @see SteamNetworking#broadcastP2PPacket(long[], int, long[], ByteBuffer, P2PSend, int, long[])
+	 */
+	public int broadcastP2PPacket(long[] steamIDsRemote, ByteBuffer data,
+								  P2PSend sendType, int channel) throws SteamException {
+
+		return broadcastP2PPacket(steamIDsRemote, steamIDsRemote.length, null, data, sendType, channel, null);
+	}
+
+	/**
+	 * Sends the same packet to the first <code>count</code> users of a list, passed as native handles, with
+	 * one native call.
+	 *
+	 * The optional <code>excludeMask</code> is a bitmap with one bit per user. Users with their bit set are
+	 * skipped.
+	 *
+	 * If <code>bytesQueuedForSend</code> isn't null, its first element receives the sum of bytes queued for
+	 * sending to all users after the packet has been sent. This can be used to apply backpressure.
+	 *
+	 * Returns the number of users the packet has been sent to successfully.
+	 */
+	public int broadcastP2PPacket(long[] steamIDsRemote, int count, long[] excludeMask, ByteBuffer data,
+								  P2PSend sendType, int channel, long[] bytesQueuedForSend) throws SteamException {
+
+		if (!data.isDirect()) {
+			throw new SteamException("Direct buffer required!");
+		}
+
+		if (count > steamIDsRemote.length) {
+			throw new SteamException("Array too small, " + steamIDsRemote.length + " found but " + count + " expected.");
+		}
+
+		long[] mask = excludeMask != null ? excludeMask : emptyMask;
+		long[] queued = bytesQueuedForSend != null ? bytesQueuedForSend : tmpLongResult;
+
+		return broadcastP2PPacket(pointer, steamIDsRemote, count, mask, mask.length, data,
+				data.position(), data.remaining(), sendType.ordinal(), channel, queued, bytesQueuedForSend != null);
+	}
+
 	public int isP2PPacketAvailable(int channel) {
 		if (isP2PPacketAvailable(pointer, tmpIntResult, channel)) {
 			return tmpIntResult[0];
@@ -118,6 +407,27 @@ public class SteamNetworking extends SteamInterface {
 		return 0;
 	}
 
+	/**
+	 * Reads all available packets of a channel into a direct {@link ByteBuffer} with one native call.
+	 *
+	 * Packets are stored back to back, starting at <code>dest.position()</code>. Position and size of each
+	 * packet, and its sender, are written to the batch index. Reading stops if the batch is full, or if
+	 * the next packet doesn't fit into the remaining buffer space. The buffer state isn't changed.
+	 *
+	 * Returns the number of packets read.
+	 */
+	public int readP2PPackets(ByteBuffer dest, int channel, P2PPacketBatch batch) throws SteamException {
+
+		if (!dest.isDirect()) {
+			throw new SteamException("Direct buffer required!");
+		}
+
+		batch.count = readP2PPackets(pointer, dest, dest.position(), dest.remaining(), channel,
+				batch.offsets.length, batch.offsets, batch.sizes, batch.steamIDs);
+
+		return batch.count;
+	}
+
 	public boolean acceptP2PSessionWithUser(SteamID steamIDRemote) {
 		return acceptP2PSessionWithUser(pointer, steamIDRemote.handle);
 	}
@@ -134,6 +444,26 @@ public class SteamNetworking extends SteamInterface {
 		return getP2PSessionState(pointer, steamIDRemote.handle, connectionState);
 	}
 
+	/**
+	 * Queries the session state of the first <code>count</code> users of a list, passed as native handles,
+	 * with one native call.
+	 *
+	 * Returns the number of users with an existing session.
+	 */
+	public int getP2PSessionStates(long[] steamIDsRemote, int count, P2PSessionStates states) throws SteamException {
+
+		if (count > steamIDsRemote.length || count > states.valid.length) {
+			throw new SteamException("Array too small, " + Math.min(steamIDsRemote.length, states.valid.length) +
+					" found but " + count + " expected.");
+		}
+
+		states.count = count;
+
+		return getP2PSessionStates(pointer, steamIDsRemote, count, states.valid,
+				states.connectionActive, states.connecting, states.sessionError, states.usingRelay,
+				states.bytesQueuedForSend, states.packetsQueuedForSend, states.remoteIP, states.remotePort);
+	}
+
 	public boolean allowP2PPacketRelay(boolean allow) {
 		return allowP2PPacketRelay(pointer, allow);
 	}
@@ -155,6 +485,60 @@ public class SteamNetworking extends SteamInterface {
 		return net->SendP2PPacket((uint64) steamIDRemote, &data[offset], size, (EP2PSend) sendType, channel);
 	*/
 
+	private static native int sendP2PPackets(long pointer, ByteBuffer data, int count, long[] steamIDs,
+											 int[] offsets, int[] sizes, int[] sendTypes, int[] channels,
+											 long[] results); /*
+
+		ISteamNetworking* net = (ISteamNetworking*) pointer;
+		int sent = 0;
+
+		memset(results, 0, ((count + 63) / 64) * sizeof(jlong));
+
+		for (int i = 0; i < count; i++) {
+			if (net->SendP2PPacket((uint64) steamIDs[i], &data[offsets[i]], sizes[i],
+					(EP2PSend) sendTypes[i], channels[i])) {
+				results[i >> 6] |= ((jlong) 1) << (i & 63);
+				sent++;
+			}
+		}
+
+		return sent;
+	*/
+
+	private static native int broadcastP2PPacket(long pointer, long[] steamIDsRemote, int count,
+												 long[] excludeMask, int maskLength, ByteBuffer data,
+												 int offset, int size, int sendType, int channel,
+												 long[] bytesQueuedForSend, boolean queryQueued); /*
+
+		ISteamNetworking* net = (ISteamNetworking*) pointer;
+		int sent = 0;
+		jlong queued = 0;
+
+		for (int i = 0; i < count; i++) {
+			int mask = i >> 6;
+			if (mask < maskLength && (excludeMask[mask] & (((jlong) 1) << (i & 63))) != 0) {
+				continue;
+			}
+
+			if (net->SendP2PPacket((uint64) steamIDsRemote[i], &data[offset], size, (EP2PSend) sendType, channel)) {
+				sent++;
+			}
+
+			if (queryQueued) {
+				P2PSessionState_t state;
+				if (net->GetP2PSessionState((uint64) steamIDsRemote[i], &state)) {
+					queued += state.m_nBytesQueuedForSend;
+				}
+			}
+		}
+
+		if (queryQueued) {
+			bytesQueuedForSend[0] = queued;
+		}
+
+		return sent;
+	*/
+
 	private static native boolean isP2PPacketAvailable(long pointer, int[] msgSize, int channel); /*
 		ISteamNetworking* net = (ISteamNetworking*) pointer;
 		return net->IsP2PPacketAvailable((uint32 *)msgSize, channel);
@@ -172,6 +556,32 @@ public class SteamNetworking extends SteamInterface {
 		return false;
 	*/
 
+	private static native int readP2PPackets(long pointer, ByteBuffer dest, int offset, int size, int channel,
+											 int maxPackets, int[] offsets, int[] sizes, long[] steamIDs); /*
+
+		ISteamNetworking* net = (ISteamNetworking*) pointer;
+		int count = 0;
+		uint32 available = 0;
+		CSteamID remote;
+
+		while (count < maxPackets && net->IsP2PPacketAvailable(&available, channel) && available <= (uint32) size) {
+			uint32 received = 0;
+			if (!net->ReadP2PPacket(&dest[offset], size, &received, &remote, channel)) {
+				break;
+			}
+
+			offsets[count] = offset;
+			sizes[count] = received;
+			steamIDs[count] = (jlong) remote.ConvertToUint64();
+			count++;
+
+			offset += received;
+			size -= received;
+		}
+
+		return count;
+	*/
+
 	private static native boolean acceptP2PSessionWithUser(long pointer, long steamIDRemote); /*
 		ISteamNetworking* net = (ISteamNetworking*) pointer;
 		return net->AcceptP2PSessionWithUser((uint64) steamIDRemote);
@@ -226,6 +636,36 @@ public class SteamNetworking extends SteamInterface {
         return false;
 	*/
 
+	private static native int getP2PSessionStates(long pointer, long[] steamIDsRemote, int count, boolean[] valid,
+												  byte[] connectionActive, byte[] connecting, byte[] sessionError,
+												  byte[] usingRelay, int[] bytesQueuedForSend,
+												  int[] packetsQueuedForSend, int[] remoteIP, short[] remotePort); /*
+
+		ISteamNetworking* net = (ISteamNetworking*) pointer;
+		int numValid = 0;
+
+		for (int i = 0; i < count; i++) {
+			P2PSessionState_t result;
+
+			if (net->GetP2PSessionState((uint64) steamIDsRemote[i], &result)) {
+				valid[i] = true;
+				connectionActive[i] = (jbyte) result.m_bConnectionActive;
+				connecting[i] = (jbyte) result.m_bConnecting;
+				sessionError[i] = (jbyte) result.m_eP2PSessionError;
+				usingRelay[i] = (jbyte) result.m_bUsingRelay;
+				bytesQueuedForSend[i] = result.m_nBytesQueuedForSend;
+				packetsQueuedForSend[i] = result.m_nPacketsQueuedForSend;
+				remoteIP[i] = (jint) result.m_nRemoteIP;
+				remotePort[i] = (jshort) result.m_nRemotePort;
+				numValid++;
+			} else {
+				valid[i] = false;
+			}
+		}
+
+		return numValid;
+	*/
+
 	private static native boolean allowP2PPacketRelay(long pointer, boolean allow); /*
 		ISteamNetworking* net = (ISteamNetworking*) pointer;
 		return net->AllowP2PPacketRelay(allow);
@@ -0,0 +1,64 @@
+package com.codedisaster.steamworks;
+
+/**
+ * Provides a {@link SteamNetworking} instance backed by a stub native interface, which accepts and counts
+ * P2P packets without sending them. Used to measure the cost of the send functions on the Java and JNI side.
+ * No Steam API is involved, so only {@link SteamAPI#loadLibraries()} needs to be called first.
+ * <p>
+ * Only the P2P send functions are meant to be used with this instance. All other native calls fail.
+ */
+public class SteamNetworkingBenchmark {
+
+	private long stub;
+	private final SteamNetworking networking;
+
+	public SteamNetworkingBenchmark() {
+		stub = createStub();
+		networking = new SteamNetworking(stub, 0L);
+	}
+
+	public SteamNetworking getNetworking() {
+		return networking;
+	}
+
+	/**
+	 * Returns the number of packets the stub accepted.
+	 */
+	public long getPacketsSent() {
+		return getPacketsSent(stub);
+	}
+
+	public long getBytesSent() {
+		return getBytesSent(stub);
+	}
+
+	public void dispose() {
+		if (stub != 0) {
+			deleteStub(stub);
+			stub = 0;
+		}
+	}
+
+	// @off
+
+	/*JNI
+		#include "SteamNetworkingStub.h"
+	*/
+
+	private static native long createStub(); /*
+		return (intp) new SteamNetworkingStub();
+	*/
+
+	private static native void deleteStub(long stub); /*
+		delete (SteamNetworkingStub*) stub;
+	*/
+
+	private static native long getPacketsSent(long stub); /*
+		return ((SteamNetworkingStub*) stub)->getPacketsSent();
+	*/
+
+	private static native long getBytesSent(long stub); /*
+		return ((SteamNetworkingStub*) stub)->getBytesSent();
+	*/
+
+}
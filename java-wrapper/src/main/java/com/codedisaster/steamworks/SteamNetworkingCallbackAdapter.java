@@ -1,12 +1,30 @@
 package com.codedisaster.steamworks;
 
+import java.nio.ByteBuffer;
+
 @SuppressWarnings("unused")
 class SteamNetworkingCallbackAdapter extends SteamCallbackAdapter<SteamNetworkingCallback> {
 
+	// event types of queued records, must match SteamNetworkingCallback.cpp
+	private static final int P2PSessionConnectFailEvent = 1;
+	private static final int P2PSessionRequestEvent = 2;
+
 	SteamNetworkingCallbackAdapter(SteamNetworkingCallback callback) {
 		super(callback);
 	}
 
+	@Override
+	void onQueuedEvent(int eventType, ByteBuffer data, int offset) {
+		switch (eventType) {
+			case P2PSessionConnectFailEvent:
+				onP2PSessionConnectFail(data.getLong(offset), data.getInt(offset + 8));
+				break;
+			case P2PSessionRequestEvent:
+				onP2PSessionRequest(data.getLong(offset));
+				break;
+		}
+	}
+
 	void onP2PSessionConnectFail(long steamIDRemote, int sessionError) {
 		SteamID id = new SteamID(steamIDRemote);
 		callback.onP2PSessionConnectFail(id, SteamNetworking.P2PSessionError.byOrdinal(sessionError));
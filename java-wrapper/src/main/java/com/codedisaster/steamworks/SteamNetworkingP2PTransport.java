@@ -0,0 +1,54 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implements {@link SteamP2PTransport} with a {@link SteamNetworking} interface.
+ */
+public class SteamNetworkingP2PTransport implements SteamP2PTransport {
+
+	private final SteamNetworking networking;
+	private final SteamID tmpSteamID = new SteamID();
+	private SteamNetworking.P2PSessionStates tmpStates = new SteamNetworking.P2PSessionStates(64);
+
+	public SteamNetworkingP2PTransport(SteamNetworking networking) {
+		this.networking = networking;
+	}
+
+	@Override
+	public boolean sendP2PPacket(long steamIDRemote, ByteBuffer data,
+								 SteamNetworking.P2PSend sendType, int channel) throws SteamException {
+		tmpSteamID.handle = steamIDRemote;
+		return networking.sendP2PPacket(tmpSteamID, data, sendType, channel);
+	}
+
+	@Override
+	public int isP2PPacketAvailable(int channel) {
+		return networking.isP2PPacketAvailable(channel);
+	}
+
+	@Override
+	public int readP2PPacket(ByteBuffer dest, int channel, long[] steamIDRemote) throws SteamException {
+		int size = networking.readP2PPacket(tmpSteamID, dest, channel);
+		steamIDRemote[0] = tmpSteamID.handle;
+		return size;
+	}
+
+	@Override
+	public void getP2PSendQueueStates(long[] steamIDsRemote, int count,
+									  int[] bytesQueuedForSend, int[] packetsQueuedForSend) throws SteamException {
+
+		if (tmpStates.getCapacity() < count) {
+			tmpStates = new SteamNetworking.P2PSessionStates(count);
+		}
+
+		networking.getP2PSessionStates(steamIDsRemote, count, tmpStates);
+
+		for (int i = 0; i < count; i++) {
+			boolean valid = tmpStates.isValid(i);
+			bytesQueuedForSend[i] = valid ? tmpStates.getBytesQueuedForSend(i) : 0;
+			packetsQueuedForSend[i] = valid ? tmpStates.getPacketsQueuedForSend(i) : 0;
+		}
+	}
+
+}
@@ -0,0 +1,234 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads packets from a set of P2P channels, and dispatches them to a single handler.
+ * <p>
+ * Channels are served by deficit round robin. Each round a channel is credited with
+ * <code>weight * quantum</code> bytes, and reads packets as long as its credit lasts. Unused credit carried
+ * over is capped to one round, or to the size of the next packet if larger. In addition, the
+ * number of bytes read per channel in one call to {@link SteamP2PChannelMux#update()} is limited by a
+ * byte budget, and the number of transport calls per update is limited too. This way a busy channel
+ * can't starve the others, and the cost of each update is bounded.
+ */
+public class SteamP2PChannelMux {
+
+	public interface PacketHandler {
+
+		/**
+		 * Called for each packet received. The packet data is located between <code>data.position()</code>
+		 * and <code>data.limit()</code>. The buffer is reused, and must not be accessed after this function
+		 * returns.
+		 */
+		void onP2PPacket(long steamIDRemote, int channel, ByteBuffer data);
+
+	}
+
+	private static class Channel {
+		final int channel;
+		final int weight;
+		final int byteBudget;
+
+		int deficit;
+		int bytesThisUpdate;
+		int nextPacketSize;
+		boolean active;
+
+		long packetsReceived;
+		long bytesReceived;
+
+		Channel(int channel, int weight, int byteBudget) {
+			this.channel = channel;
+			this.weight = weight;
+			this.byteBudget = byteBudget;
+		}
+	}
+
+	private final SteamP2PTransport transport;
+	private final PacketHandler handler;
+	private final int quantum;
+	private final int maxCallsPerUpdate;
+
+	private Channel[] channels = new Channel[0];
+	private ByteBuffer buffer;
+	private final long[] steamIDRemote = new long[1];
+
+	private int callsLastUpdate;
+
+	/**
+	 * @param quantum number of bytes a channel with weight 1 is credited per round
+	 * @param maxCallsPerUpdate maximum number of transport calls per update, must be at least 2
+	 */
+	public SteamP2PChannelMux(SteamP2PTransport transport, PacketHandler handler,
+							  int quantum, int maxCallsPerUpdate) {
+
+		if (quantum <= 0 || maxCallsPerUpdate < 2) {
+			throw new IllegalArgumentException("Invalid quantum or call limit.");
+		}
+
+		this.transport = transport;
+		this.handler = handler;
+		this.quantum = quantum;
+		this.maxCallsPerUpdate = maxCallsPerUpdate;
+		this.buffer = ByteBuffer.allocateDirect(quantum);
+	}
+
+	/**
+	 * Adds a channel to poll.
+	 *
+	 * @param weight relative share of the channel
+	 * @param byteBudget maximum number of bytes read from this channel per update
+	 */
+	public void addChannel(int channel, int weight, int byteBudget) {
+		if (weight <= 0 || byteBudget <= 0) {
+			throw new IllegalArgumentException("Weight and byte budget must be positive.");
+		}
+
+		if (findChannel(channel) != null) {
+			throw new IllegalArgumentException("Channel " + channel + " already added.");
+		}
+
+		Channel[] newChannels = new Channel[channels.length + 1];
+		System.arraycopy(channels, 0, newChannels, 0, channels.length);
+		newChannels[channels.length] = new Channel(channel, weight, byteBudget);
+		channels = newChannels;
+	}
+
+	public void removeChannel(int channel) {
+		for (int i = 0; i < channels.length; i++) {
+			if (channels[i].channel == channel) {
+				Channel[] newChannels = new Channel[channels.length - 1];
+				System.arraycopy(channels, 0, newChannels, 0, i);
+				System.arraycopy(channels, i + 1, newChannels, i, channels.length - i - 1);
+				channels = newChannels;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Reads pending packets from all channels, and passes them to the handler.
+	 *
+	 * Returns the number of packets dispatched.
+	 */
+	public int update() throws SteamException {
+		int calls = 0;
+		int packets = 0;
+		int numActive = channels.length;
+
+		for (Channel channel : channels) {
+			channel.bytesThisUpdate = 0;
+			channel.nextPacketSize = -1;
+			channel.active = true;
+		}
+
+		while (numActive > 0 && calls < maxCallsPerUpdate) {
+
+			for (int i = 0; i < channels.length && calls < maxCallsPerUpdate; i++) {
+				Channel channel = channels[i];
+				if (!channel.active) {
+					continue;
+				}
+
+				int credit = channel.weight * quantum;
+				channel.deficit += credit;
+
+				while (calls < maxCallsPerUpdate) {
+
+					if (channel.nextPacketSize < 0) {
+						channel.nextPacketSize = transport.isP2PPacketAvailable(channel.channel);
+						calls++;
+					}
+
+					int size = channel.nextPacketSize;
+
+					if (size == 0) {
+						// nothing left to read, don't carry credit over
+						channel.deficit = 0;
+						channel.active = false;
+						numActive--;
+						break;
+					}
+
+					if (channel.bytesThisUpdate > 0 && channel.bytesThisUpdate + size > channel.byteBudget) {
+						// budget exhausted, keep some credit for the next update
+						channel.active = false;
+						numActive--;
+						break;
+					}
+
+					if (size > channel.deficit || calls >= maxCallsPerUpdate) {
+						// wait for the next round
+						break;
+					}
+
+					ensureCapacity(size);
+					buffer.clear();
+
+					int received = transport.readP2PPacket(buffer, channel.channel, steamIDRemote);
+					calls++;
+
+					channel.nextPacketSize = -1;
+
+					if (received == 0) {
+						continue;
+					}
+
+					channel.deficit -= received;
+					channel.bytesThisUpdate += received;
+					channel.packetsReceived++;
+					channel.bytesReceived += received;
+
+					buffer.limit(received);
+					handler.onP2PPacket(steamIDRemote[0], channel.channel, buffer);
+					packets++;
+				}
+
+				// carry over no more credit than one round, or than the next packet needs, so a channel
+				// stopped by its byte budget or the call limit can't pile up credit across updates
+				channel.deficit = Math.min(channel.deficit, Math.max(credit, channel.nextPacketSize));
+			}
+		}
+
+		callsLastUpdate = calls;
+		return packets;
+	}
+
+	/**
+	 * Returns the number of transport calls made by the last update.
+	 */
+	public int getCallsLastUpdate() {
+		return callsLastUpdate;
+	}
+
+	public long getPacketsReceived(int channel) {
+		Channel c = findChannel(channel);
+		return c != null ? c.packetsReceived : 0;
+	}
+
+	public long getBytesReceived(int channel) {
+		Channel c = findChannel(channel);
+		return c != null ? c.bytesReceived : 0;
+	}
+
+	private Channel findChannel(int channel) {
+		for (Channel c : channels) {
+			if (c.channel == channel) {
+				return c;
+			}
+		}
+		return null;
+	}
+
+	private void ensureCapacity(int size) {
+		if (buffer.capacity() < size) {
+			int capacity = buffer.capacity();
+			while (capacity < size) {
+				capacity <<= 1;
+			}
+			buffer = ByteBuffer.allocateDirect(capacity);
+		}
+	}
+
+}
@@ -0,0 +1,321 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Opt-in flow control for P2P sends, based on the send queue state reported by Steam.
+ * <p>
+ * Call {@link SteamP2PFlowControl#update()} once per tick to sample the send queue of all known users, then
+ * send packets through {@link SteamP2PFlowControl#sendP2PPacket(long, ByteBuffer, SteamNetworking.P2PSend, int)}.
+ * If the number of bytes queued for a user exceeds the high watermark, the user is flagged as congested
+ * until the queue drops below the low watermark again. While congested:
+ * <ul>
+ * <li><code>Unreliable</code> packets are coalesced. Only the latest packet per channel is kept, and sent
+ * once the user isn't congested anymore.</li>
+ * <li><code>UnreliableNoDelay</code> packets are dropped.</li>
+ * <li><code>Reliable</code> packets are downgraded to <code>ReliableWithBuffering</code>.</li>
+ * </ul>
+ * Optionally, <code>ReliableWithBuffering</code> packets are upgraded to <code>Reliable</code> if there's
+ * nothing queued for a user.
+ * <p>
+ * {@link SteamP2PLoopbackTransport} with a limited send rate can be used to test the congestion handling
+ * without Steam.
+ */
+public class SteamP2PFlowControl {
+
+	public static class PeerMetrics {
+		int bytesQueuedForSend;
+		int packetsQueuedForSend;
+		boolean congested;
+		long packetsSent;
+		long bytesSent;
+		long packetsFailed;
+		long packetsDropped;
+		long packetsCoalesced;
+		long sendTypeDowngrades;
+		long sendTypeUpgrades;
+
+		public int getBytesQueuedForSend() {
+			return bytesQueuedForSend;
+		}
+
+		public int getPacketsQueuedForSend() {
+			return packetsQueuedForSend;
+		}
+
+		public boolean isCongested() {
+			return congested;
+		}
+
+		public long getPacketsSent() {
+			return packetsSent;
+		}
+
+		public long getBytesSent() {
+			return bytesSent;
+		}
+
+		public long getPacketsFailed() {
+			return packetsFailed;
+		}
+
+		public long getPacketsDropped() {
+			return packetsDropped;
+		}
+
+		public long getPacketsCoalesced() {
+			return packetsCoalesced;
+		}
+
+		public long getSendTypeDowngrades() {
+			return sendTypeDowngrades;
+		}
+
+		public long getSendTypeUpgrades() {
+			return sendTypeUpgrades;
+		}
+
+		void set(PeerMetrics other) {
+			bytesQueuedForSend = other.bytesQueuedForSend;
+			packetsQueuedForSend = other.packetsQueuedForSend;
+			congested = other.congested;
+			packetsSent = other.packetsSent;
+			bytesSent = other.bytesSent;
+			packetsFailed = other.packetsFailed;
+			packetsDropped = other.packetsDropped;
+			packetsCoalesced = other.packetsCoalesced;
+			sendTypeDowngrades = other.sendTypeDowngrades;
+			sendTypeUpgrades = other.sendTypeUpgrades;
+		}
+	}
+
+	private static class PendingPacket {
+		int channel;
+		boolean valid;
+		ByteBuffer data;
+		PendingPacket next;
+	}
+
+	private static class Peer {
+		final long steamID;
+		final PeerMetrics metrics = new PeerMetrics();
+		PendingPacket pending;
+
+		Peer(long steamID) {
+			this.steamID = steamID;
+		}
+	}
+
+	private final SteamP2PTransport transport;
+	private final int highWatermark;
+	private final int lowWatermark;
+	private boolean upgradeBufferedSends = false;
+
+	private final SteamLongMap<Peer> peers = new SteamLongMap<Peer>();
+
+	private Peer[] samplePeers = new Peer[16];
+	private long[] sampleIDs = new long[16];
+	private int[] sampleBytes = new int[16];
+	private int[] samplePackets = new int[16];
+
+	/**
+	 * @param highWatermark number of queued bytes at which a user is considered congested
+	 * @param lowWatermark number of queued bytes at which a congested user recovers
+	 */
+	public SteamP2PFlowControl(SteamP2PTransport transport, int highWatermark, int lowWatermark) {
+		if (lowWatermark > highWatermark) {
+			throw new IllegalArgumentException("Low watermark must not exceed high watermark.");
+		}
+		this.transport = transport;
+		this.highWatermark = highWatermark;
+		this.lowWatermark = lowWatermark;
+	}
+
+	/**
+	 * If enabled, <code>ReliableWithBuffering</code> packets are sent as <code>Reliable</code> if there's
+	 * nothing queued for a user. Disabled by default.
+	 */
+	public void setUpgradeBufferedSends(boolean upgrade) {
+		upgradeBufferedSends = upgrade;
+	}
+
+	public void addPeer(long steamIDRemote) {
+		getPeer(steamIDRemote);
+	}
+
+	/**
+	 * Stops tracking a user. Coalesced packets which haven't been sent yet are discarded.
+	 */
+	public void removePeer(long steamIDRemote) {
+		peers.remove(steamIDRemote);
+	}
+
+	/**
+	 * Copies the metrics of a user. Returns false if the user isn't tracked.
+	 */
+	public boolean getPeerMetrics(long steamIDRemote, PeerMetrics metrics) {
+		Peer peer = peers.get(steamIDRemote);
+		if (peer == null) {
+			return false;
+		}
+		metrics.set(peer.metrics);
+		return true;
+	}
+
+	/**
+	 * Samples the send queue state of all users with one call to the transport, updates their congestion
+	 * state, and sends coalesced packets to users which recovered.
+	 */
+	public void update() throws SteamException {
+		int count = 0;
+
+		if (samplePeers.length < peers.size()) {
+			int capacity = peers.capacity();
+			samplePeers = new Peer[capacity];
+			sampleIDs = new long[capacity];
+			sampleBytes = new int[capacity];
+			samplePackets = new int[capacity];
+		}
+
+		for (int slot = 0; slot < peers.capacity(); slot++) {
+			Peer peer = peers.valueAt(slot);
+			if (peer != null) {
+				samplePeers[count] = peer;
+				sampleIDs[count] = peer.steamID;
+				count++;
+			}
+		}
+
+		if (count == 0) {
+			return;
+		}
+
+		transport.getP2PSendQueueStates(sampleIDs, count, sampleBytes, samplePackets);
+
+		for (int i = 0; i < count; i++) {
+			Peer peer = samplePeers[i];
+			samplePeers[i] = null;
+
+			PeerMetrics metrics = peer.metrics;
+			metrics.bytesQueuedForSend = sampleBytes[i];
+			metrics.packetsQueuedForSend = samplePackets[i];
+
+			if (metrics.congested) {
+				if (metrics.bytesQueuedForSend <= lowWatermark) {
+					metrics.congested = false;
+					flushPending(peer);
+				}
+			} else if (metrics.bytesQueuedForSend >= highWatermark) {
+				metrics.congested = true;
+			}
+		}
+	}
+
+	/**
+	 * Sends a packet, or defers or drops it if the user is congested. Unknown users are added.
+	 *
+	 * Returns true if the packet has been sent, or coalesced to be sent later.
+	 */
+	public boolean sendP2PPacket(long steamIDRemote, ByteBuffer data,
+								 SteamNetworking.P2PSend sendType, int channel) throws SteamException {
+
+		Peer peer = getPeer(steamIDRemote);
+		PeerMetrics metrics = peer.metrics;
+
+		if (metrics.congested) {
+			switch (sendType) {
+				case Unreliable:
+					coalesce(peer, data, channel);
+					return true;
+				case UnreliableNoDelay:
+					metrics.packetsDropped++;
+					return false;
+				case Reliable:
+					sendType = SteamNetworking.P2PSend.ReliableWithBuffering;
+					metrics.sendTypeDowngrades++;
+					break;
+				default:
+					break;
+			}
+		} else if (upgradeBufferedSends && sendType == SteamNetworking.P2PSend.ReliableWithBuffering
+				&& metrics.packetsQueuedForSend == 0) {
+			sendType = SteamNetworking.P2PSend.Reliable;
+			metrics.sendTypeUpgrades++;
+		}
+
+		return send(peer, data, sendType, channel);
+	}
+
+	private boolean send(Peer peer, ByteBuffer data,
+						 SteamNetworking.P2PSend sendType, int channel) throws SteamException {
+
+		PeerMetrics metrics = peer.metrics;
+		int size = data.remaining();
+
+		if (transport.sendP2PPacket(peer.steamID, data, sendType, channel)) {
+			metrics.packetsSent++;
+			metrics.bytesSent += size;
+
+			// estimate queue growth until the next update()
+			metrics.bytesQueuedForSend += size;
+			metrics.packetsQueuedForSend++;
+
+			if (!metrics.congested && metrics.bytesQueuedForSend >= highWatermark) {
+				metrics.congested = true;
+			}
+
+			return true;
+		}
+
+		metrics.packetsFailed++;
+		return false;
+	}
+
+	private void coalesce(Peer peer, ByteBuffer data, int channel) {
+		PendingPacket pending = peer.pending;
+		while (pending != null && pending.channel != channel) {
+			pending = pending.next;
+		}
+
+		if (pending == null) {
+			pending = new PendingPacket();
+			pending.channel = channel;
+			pending.next = peer.pending;
+			peer.pending = pending;
+		}
+
+		if (pending.valid) {
+			peer.metrics.packetsCoalesced++;
+		}
+
+		int size = data.remaining();
+		if (pending.data == null || pending.data.capacity() < size) {
+			pending.data = ByteBuffer.allocateDirect(size);
+		}
+
+		pending.data.clear();
+		pending.data.put(data.duplicate());
+		pending.data.flip();
+		pending.valid = true;
+	}
+
+	private void flushPending(Peer peer) throws SteamException {
+		// stop if the user gets congested again, the rest is sent on the next recovery
+		for (PendingPacket pending = peer.pending; pending != null && !peer.metrics.congested; pending = pending.next) {
+			if (pending.valid) {
+				pending.valid = false;
+				send(peer, pending.data, SteamNetworking.P2PSend.Unreliable, pending.channel);
+			}
+		}
+	}
+
+	private Peer getPeer(long steamIDRemote) {
+		Peer peer = peers.get(steamIDRemote);
+		if (peer == null) {
+			peer = new Peer(steamIDRemote);
+			peers.put(steamIDRemote, peer);
+		}
+		return peer;
+	}
+
+}
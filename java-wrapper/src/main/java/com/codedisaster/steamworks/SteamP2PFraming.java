@@ -0,0 +1,612 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * Message framing on top of a {@link SteamP2PTransport}.
+ * <p>
+ * Small messages sent to the same user, on the same channel and with the same send type, are coalesced
+ * into one packet. A packet is sent when it is full, or by {@link SteamP2PFraming#update()} once its first
+ * message has been waiting for the configured delay. Messages which don't fit into one packet are split
+ * into fragments, and reassembled on the receiving side.
+ * <p>
+ * Incoming packets are either read with {@link SteamP2PFraming#readP2PPackets(int, int)}, or passed in
+ * with {@link SteamP2PFraming#onP2PPacket(long, int, ByteBuffer)}, for example by a {@link SteamP2PChannelMux}.
+ * <p>
+ * Packets consist of frames, each starting with a one byte type and a two byte frame length. Fragments add
+ * a two byte message ID, and the total message size and fragment offset as four bytes each. All fragments
+ * of a message, except the last one, have the same size. Duplicate fragments are ignored, and a message is
+ * only passed on once all of its fragments arrived. Incomplete messages are discarded if a fragment of
+ * another message arrives on the same channel, or after a timeout.
+ * <p>
+ * Users are forgotten after some time without sending or receiving, see
+ * {@link SteamP2PFraming#setPeerIdleTimeout(int)}, or explicitly with
+ * {@link SteamP2PFraming#removePeer(long)}.
+ * <p>
+ * This class is not thread safe.
+ */
+public class SteamP2PFraming implements SteamP2PChannelMux.PacketHandler {
+
+	public interface MessageHandler {
+
+		/**
+		 * Called for each message received. The message is located between <code>data.position()</code>
+		 * and <code>data.limit()</code>. The handler may change position and limit, e.g. by using relative
+		 * get() functions. The buffer is reused, and must not be accessed after this function returns.
+		 */
+		void onP2PMessage(long steamIDRemote, int channel, ByteBuffer data);
+
+	}
+
+	private static final byte FrameMessage = 0;
+	private static final byte FrameFragment = 1;
+
+	private static final int MessageHeaderSize = 3;
+	private static final int FragmentHeaderSize = 13;
+
+	private static class Outgoing {
+		final int channel;
+		final SteamNetworking.P2PSend sendType;
+		final ByteBuffer buffer;
+		long firstMessageTime;
+		Outgoing next;
+
+		Outgoing(int channel, SteamNetworking.P2PSend sendType, ByteBuffer buffer) {
+			this.channel = channel;
+			this.sendType = sendType;
+			this.buffer = buffer;
+		}
+	}
+
+	private static class Incoming {
+		final int channel;
+		int messageID;
+		int messageSize;
+		int fragmentSize; // zero until a fragment other than the last one arrived
+		int fragmentCount;
+		int fragmentsReceived;
+		int lastOffset; // offset of the last fragment, if it arrived before fragmentSize is known
+		final BitSet fragments = new BitSet();
+		long startTime;
+		ByteBuffer buffer;
+		Incoming next;
+
+		Incoming(int channel) {
+			this.channel = channel;
+		}
+	}
+
+	private static class Peer {
+		final long steamID;
+		short nextMessageID;
+		long lastActivityTime;
+		Outgoing outgoing;
+		Incoming incoming;
+
+		Peer(long steamID) {
+			this.steamID = steamID;
+		}
+	}
+
+	private final SteamP2PTransport transport;
+	private final MessageHandler handler;
+	private final int maxPacketSize;
+	private final int maxMessageSize;
+
+	private long maxDelayNanos = 0;
+	private long reassemblyTimeoutNanos = 5000 * 1000000L;
+	private long peerIdleTimeoutNanos = 60000 * 1000000L;
+
+	private final SteamLongMap<Peer> peers = new SteamLongMap<Peer>();
+	private final SteamBufferPool pool = new SteamBufferPool(16);
+
+	private final ByteBuffer fragmentBuffer;
+	private ByteBuffer readBuffer;
+	private final long[] steamIDRemote = new long[1];
+	private long[] idlePeers = new long[16];
+
+	private long packetsSent;
+	private long messagesSent;
+	private long packetsReceived;
+	private long messagesReceived;
+	private long messagesDiscarded;
+	private long fragmentsIgnored;
+	private long peersEvicted;
+	private long sendFailures;
+
+	/**
+	 * @param maxPacketSize maximum size of packets sent, e.g. 1200 bytes for unreliable packets
+	 * @param maxMessageSize maximum size of messages accepted for reassembly
+	 */
+	public SteamP2PFraming(SteamP2PTransport transport, MessageHandler handler,
+						   int maxPacketSize, int maxMessageSize) {
+
+		if (maxPacketSize <= FragmentHeaderSize || maxPacketSize > 0xffff) {
+			throw new IllegalArgumentException("Invalid packet size: " + maxPacketSize);
+		}
+
+		this.transport = transport;
+		this.handler = handler;
+		this.maxPacketSize = maxPacketSize;
+		this.maxMessageSize = maxMessageSize;
+
+		fragmentBuffer = ByteBuffer.allocateDirect(maxPacketSize);
+		readBuffer = ByteBuffer.allocateDirect(maxPacketSize);
+	}
+
+	/**
+	 * Sets how long messages are held back to be coalesced with others. Defaults to zero, which sends
+	 * pending messages with each call to {@link SteamP2PFraming#update()}.
+	 */
+	public void setMaxDelay(int milliseconds) {
+		maxDelayNanos = milliseconds * 1000000L;
+	}
+
+	/**
+	 * Sets how long incomplete messages are kept. Defaults to five seconds.
+	 */
+	public void setReassemblyTimeout(int milliseconds) {
+		reassemblyTimeoutNanos = milliseconds * 1000000L;
+	}
+
+	/**
+	 * Sets how long users are kept without sending or receiving fragments. Users with pending or incomplete
+	 * messages are kept. Defaults to one minute. Zero disables eviction.
+	 */
+	public void setPeerIdleTimeout(int milliseconds) {
+		peerIdleTimeoutNanos = milliseconds * 1000000L;
+	}
+
+	/**
+	 * Queues a message. The message is copied, and its buffer can be reused after this call.
+	 *
+	 * Returns false if a packet could not be sent. Messages too large for one packet are fragmented,
+	 * and sent immediately.
+	 */
+	public boolean sendP2PMessage(long steamIDRemote, ByteBuffer data,
+								  SteamNetworking.P2PSend sendType, int channel) throws SteamException {
+
+		int size = data.remaining();
+		if (size > maxMessageSize) {
+			throw new SteamException("Message too large, " + size + " bytes found but "
+					+ maxMessageSize + " bytes maximum expected.");
+		}
+
+		Peer peer = getPeer(steamIDRemote);
+		Outgoing outgoing = getOutgoing(peer, channel, sendType);
+		ByteBuffer buffer = outgoing.buffer;
+		boolean result = true;
+
+		messagesSent++;
+
+		if (MessageHeaderSize + size > maxPacketSize) {
+			// keep order: send what's pending first
+			result = flush(peer, outgoing);
+			return sendFragments(peer, data, sendType, channel) && result;
+		}
+
+		if (buffer.remaining() < MessageHeaderSize + size) {
+			result = flush(peer, outgoing);
+		}
+
+		if (buffer.position() == 0) {
+			outgoing.firstMessageTime = System.nanoTime();
+		}
+
+		buffer.put(FrameMessage);
+		buffer.putShort((short) size);
+		buffer.put(data.duplicate());
+
+		if (maxDelayNanos == 0 && buffer.remaining() <= MessageHeaderSize) {
+			result &= flush(peer, outgoing);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Sends pending packets which reached their deadline, discards timed out reassemblies, and forgets
+	 * about idle users.
+	 */
+	public void update() throws SteamException {
+		long now = System.nanoTime();
+		int numIdlePeers = 0;
+
+		for (int slot = 0; slot < peers.capacity(); slot++) {
+			Peer peer = peers.valueAt(slot);
+			if (peer == null) {
+				continue;
+			}
+
+			boolean idle = peerIdleTimeoutNanos > 0 && now - peer.lastActivityTime >= peerIdleTimeoutNanos;
+
+			for (Outgoing outgoing = peer.outgoing; outgoing != null; outgoing = outgoing.next) {
+				if (outgoing.buffer.position() > 0) {
+					if (now - outgoing.firstMessageTime >= maxDelayNanos) {
+						flush(peer, outgoing);
+					} else {
+						idle = false;
+					}
+				}
+			}
+
+			for (Incoming incoming = peer.incoming; incoming != null; incoming = incoming.next) {
+				if (incoming.buffer != null) {
+					if (now - incoming.startTime >= reassemblyTimeoutNanos) {
+						discard(incoming);
+					} else {
+						idle = false;
+					}
+				}
+			}
+
+			if (idle) {
+				if (numIdlePeers == idlePeers.length) {
+					long[] grown = new long[numIdlePeers * 2];
+					System.arraycopy(idlePeers, 0, grown, 0, numIdlePeers);
+					idlePeers = grown;
+				}
+				idlePeers[numIdlePeers++] = peer.steamID;
+			}
+		}
+
+		// removing entries reorders slots, so it's done after iterating
+		for (int i = 0; i < numIdlePeers; i++) {
+			peers.remove(idlePeers[i]);
+			peersEvicted++;
+		}
+	}
+
+	/**
+	 * Sends all pending packets, regardless of their deadline.
+	 */
+	public void flush() throws SteamException {
+		for (int slot = 0; slot < peers.capacity(); slot++) {
+			Peer peer = peers.valueAt(slot);
+			if (peer != null) {
+				for (Outgoing outgoing = peer.outgoing; outgoing != null; outgoing = outgoing.next) {
+					flush(peer, outgoing);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forgets about a user. Pending and incomplete messages are discarded.
+	 */
+	public void removePeer(long steamIDRemote) {
+		Peer peer = peers.remove(steamIDRemote);
+		if (peer != null) {
+			for (Incoming incoming = peer.incoming; incoming != null; incoming = incoming.next) {
+				if (incoming.buffer != null) {
+					discard(incoming);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads up to <code>maxPackets</code> packets from a channel, and passes the messages they contain to
+	 * the message handler. Returns the number of packets read.
+	 */
+	public int readP2PPackets(int channel, int maxPackets) throws SteamException {
+		int packets = 0;
+		int size;
+
+		while (packets < maxPackets && (size = transport.isP2PPacketAvailable(channel)) > 0) {
+			if (readBuffer.capacity() < size) {
+				readBuffer = ByteBuffer.allocateDirect(size);
+			}
+
+			readBuffer.clear();
+			int received = transport.readP2PPacket(readBuffer, channel, steamIDRemote);
+			if (received == 0) {
+				break;
+			}
+
+			readBuffer.limit(received);
+			onP2PPacket(steamIDRemote[0], channel, readBuffer);
+			packets++;
+		}
+
+		return packets;
+	}
+
+	/**
+	 * Parses a packet, and passes the messages it contains to the message handler.
+	 * Malformed packets are ignored.
+	 */
+	@Override
+	public void onP2PPacket(long steamIDRemote, int channel, ByteBuffer data) {
+		ByteBuffer packet = data.duplicate();
+		Peer peer = null;
+
+		packetsReceived++;
+
+		while (packet.remaining() >= MessageHeaderSize) {
+			byte type = packet.get();
+			int length = packet.getShort() & 0xffff;
+
+			if (type == FrameMessage) {
+				if (length > packet.remaining()) {
+					return;
+				}
+
+				// the handler may move position and limit, the next frame is found from the saved ones
+				int start = packet.position();
+				int limit = packet.limit();
+				packet.limit(start + length);
+				messagesReceived++;
+				handler.onP2PMessage(steamIDRemote, channel, packet);
+				packet.limit(limit);
+				packet.position(start + length);
+
+			} else if (type == FrameFragment) {
+				if (length + FragmentHeaderSize - MessageHeaderSize > packet.remaining()) {
+					return;
+				}
+
+				if (peer == null) {
+					peer = getPeer(steamIDRemote);
+				}
+
+				int messageID = packet.getShort() & 0xffff;
+				int messageSize = packet.getInt();
+				int offset = packet.getInt();
+
+				int start = packet.position();
+				onFragment(peer, channel, packet, length, messageID, messageSize, offset);
+				packet.position(start + length);
+
+			} else {
+				return;
+			}
+		}
+	}
+
+	public long getPacketsSent() {
+		return packetsSent;
+	}
+
+	public long getMessagesSent() {
+		return messagesSent;
+	}
+
+	public long getPacketsReceived() {
+		return packetsReceived;
+	}
+
+	public long getMessagesReceived() {
+		return messagesReceived;
+	}
+
+	/**
+	 * Returns the number of incomplete messages which have been discarded.
+	 */
+	public long getMessagesDiscarded() {
+		return messagesDiscarded;
+	}
+
+	/**
+	 * Returns the number of duplicate or inconsistent fragments which have been ignored.
+	 */
+	public long getFragmentsIgnored() {
+		return fragmentsIgnored;
+	}
+
+	/**
+	 * Returns the number of users forgotten after being idle.
+	 */
+	public long getPeersEvicted() {
+		return peersEvicted;
+	}
+
+	public long getSendFailures() {
+		return sendFailures;
+	}
+
+	private void onFragment(Peer peer, int channel, ByteBuffer packet, int length,
+							int messageID, int messageSize, int offset) {
+
+		if (messageSize <= 0 || messageSize > maxMessageSize
+				|| length <= 0 || offset < 0 || offset > messageSize - length) {
+			return;
+		}
+
+		Incoming incoming = getIncoming(peer, channel);
+
+		if (incoming.buffer != null && (incoming.messageID != messageID || incoming.messageSize != messageSize)) {
+			discard(incoming);
+		}
+
+		if (incoming.buffer == null) {
+			incoming.messageID = messageID;
+			incoming.messageSize = messageSize;
+			incoming.fragmentSize = 0;
+			incoming.fragmentCount = 0;
+			incoming.fragmentsReceived = 0;
+			incoming.lastOffset = -1;
+			incoming.fragments.clear();
+			incoming.startTime = System.nanoTime();
+			incoming.buffer = pool.obtain(messageSize);
+		}
+
+		int index;
+		boolean last = offset + length == messageSize;
+
+		if (incoming.fragmentSize == 0 && (!last || offset == 0)) {
+			// the first fragment other than the last one tells the size of all fragments
+			if (offset % length != 0) {
+				fragmentsIgnored++;
+				return;
+			}
+
+			incoming.fragmentSize = length;
+			incoming.fragmentCount = (messageSize + length - 1) / length;
+
+			if (incoming.lastOffset >= 0) {
+				if (incoming.lastOffset != (incoming.fragmentCount - 1) * length) {
+					fragmentsIgnored++;
+					discard(incoming);
+					return;
+				}
+				incoming.fragments.set(incoming.fragmentCount - 1);
+				incoming.fragmentsReceived++;
+			}
+
+			index = offset / length;
+
+		} else if (incoming.fragmentSize == 0) {
+			// last fragment arrived first: keep it, and count it once the fragment size is known
+			if (incoming.lastOffset >= 0) {
+				fragmentsIgnored++;
+				return;
+			}
+			incoming.lastOffset = offset;
+			index = -1;
+
+		} else if (last ? offset != (incoming.fragmentCount - 1) * incoming.fragmentSize
+				: length != incoming.fragmentSize || offset % length != 0) {
+			fragmentsIgnored++;
+			return;
+
+		} else {
+			index = offset / incoming.fragmentSize;
+		}
+
+		if (index >= 0) {
+			if (incoming.fragments.get(index)) {
+				fragmentsIgnored++;
+				return;
+			}
+			incoming.fragments.set(index);
+			incoming.fragmentsReceived++;
+		}
+
+		ByteBuffer fragment = packet.duplicate();
+		fragment.limit(fragment.position() + length);
+
+		ByteBuffer target = incoming.buffer.duplicate();
+		target.position(offset);
+		target.put(fragment);
+
+		if (incoming.fragmentCount > 0 && incoming.fragmentsReceived == incoming.fragmentCount) {
+			ByteBuffer message = incoming.buffer;
+			incoming.buffer = null;
+
+			message.position(0);
+			message.limit(messageSize);
+
+			messagesReceived++;
+			try {
+				handler.onP2PMessage(peer.steamID, channel, message);
+			} finally {
+				pool.free(message);
+			}
+		}
+	}
+
+	private void discard(Incoming incoming) {
+		pool.free(incoming.buffer);
+		incoming.buffer = null;
+		messagesDiscarded++;
+	}
+
+	private boolean sendFragments(Peer peer, ByteBuffer data,
+								  SteamNetworking.P2PSend sendType, int channel) throws SteamException {
+
+		int messageSize = data.remaining();
+		int messageID = peer.nextMessageID++ & 0xffff;
+		int maxFragmentSize = maxPacketSize - FragmentHeaderSize;
+
+		ByteBuffer source = data.duplicate();
+		boolean result = true;
+
+		for (int offset = 0; offset < messageSize; offset += maxFragmentSize) {
+			int length = Math.min(maxFragmentSize, messageSize - offset);
+
+			fragmentBuffer.clear();
+			fragmentBuffer.put(FrameFragment);
+			fragmentBuffer.putShort((short) length);
+			fragmentBuffer.putShort((short) messageID);
+			fragmentBuffer.putInt(messageSize);
+			fragmentBuffer.putInt(offset);
+
+			source.limit(data.position() + offset + length);
+			source.position(data.position() + offset);
+			fragmentBuffer.put(source);
+			fragmentBuffer.flip();
+
+			result &= send(peer, fragmentBuffer, sendType, channel);
+		}
+
+		return result;
+	}
+
+	private boolean flush(Peer peer, Outgoing outgoing) throws SteamException {
+		ByteBuffer buffer = outgoing.buffer;
+		if (buffer.position() == 0) {
+			return true;
+		}
+
+		buffer.flip();
+		boolean result = send(peer, buffer, outgoing.sendType, outgoing.channel);
+		buffer.clear();
+
+		return result;
+	}
+
+	private boolean send(Peer peer, ByteBuffer packet,
+						 SteamNetworking.P2PSend sendType, int channel) throws SteamException {
+
+		if (transport.sendP2PPacket(peer.steamID, packet, sendType, channel)) {
+			packetsSent++;
+			return true;
+		}
+
+		sendFailures++;
+		return false;
+	}
+
+	private Peer getPeer(long steamIDRemote) {
+		Peer peer = peers.get(steamIDRemote);
+		if (peer == null) {
+			peer = new Peer(steamIDRemote);
+			peers.put(steamIDRemote, peer);
+		}
+		peer.lastActivityTime = System.nanoTime();
+		return peer;
+	}
+
+	private Outgoing getOutgoing(Peer peer, int channel, SteamNetworking.P2PSend sendType) {
+		Outgoing outgoing = peer.outgoing;
+		while (outgoing != null && (outgoing.channel != channel || outgoing.sendType != sendType)) {
+			outgoing = outgoing.next;
+		}
+
+		if (outgoing == null) {
+			outgoing = new Outgoing(channel, sendType, ByteBuffer.allocateDirect(maxPacketSize));
+			outgoing.next = peer.outgoing;
+			peer.outgoing = outgoing;
+		}
+
+		return outgoing;
+	}
+
+	private Incoming getIncoming(Peer peer, int channel) {
+		Incoming incoming = peer.incoming;
+		while (incoming != null && incoming.channel != channel) {
+			incoming = incoming.next;
+		}
+
+		if (incoming == null) {
+			incoming = new Incoming(channel);
+			incoming.next = peer.incoming;
+			peer.incoming = incoming;
+		}
+
+		return incoming;
+	}
+
+}
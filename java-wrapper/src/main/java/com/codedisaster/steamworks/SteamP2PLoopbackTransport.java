@@ -0,0 +1,209 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory implementation of {@link SteamP2PTransport}, to run P2P code without Steam.
+ * <p>
+ * Each instance represents one user. Packets sent to another user are delivered immediately to
+ * the instance registered for this user with {@link SteamP2PLoopbackTransport#connect(SteamP2PLoopbackTransport)}.
+ * Packets sent to unknown users are discarded. Unreliable packets above
+ * {@link SteamP2PLoopbackTransport#MaxUnreliablePacketSize} are rejected, like Steam does.
+ * <p>
+ * To simulate a limited upload, set a send rate with {@link SteamP2PLoopbackTransport#setSendRate(int)}.
+ * Packets are then held in a send queue, which is reported by
+ * {@link SteamP2PLoopbackTransport#getP2PSendQueueStates(long[], int, int[], int[])}, and delivered by
+ * {@link SteamP2PLoopbackTransport#deliverQueuedPackets()}.
+ * <p>
+ * This class is not thread safe.
+ */
+public class SteamP2PLoopbackTransport implements SteamP2PTransport {
+
+	public static final int MaxUnreliablePacketSize = 1200;
+
+	private static class Packet {
+		final long steamIDRemote;
+		final int channel;
+		final byte[] data;
+
+		Packet(long steamIDRemote, int channel, byte[] data) {
+			this.steamIDRemote = steamIDRemote;
+			this.channel = channel;
+			this.data = data;
+		}
+	}
+
+	private static class SendQueueState {
+		int bytesQueued;
+		int packetsQueued;
+	}
+
+	private final long steamID;
+	private final SteamLongMap<SteamP2PLoopbackTransport> remotes = new SteamLongMap<SteamP2PLoopbackTransport>();
+	private final Map<Integer, ArrayDeque<Packet>> channels = new HashMap<Integer, ArrayDeque<Packet>>();
+
+	private int sendRate = 0;
+	private final ArrayDeque<Packet> sendQueue = new ArrayDeque<Packet>();
+	private final SteamLongMap<SendQueueState> sendQueueStates = new SteamLongMap<SendQueueState>();
+
+	private long packetsSent;
+	private long bytesSent;
+
+	public SteamP2PLoopbackTransport(long steamID) {
+		this.steamID = steamID;
+	}
+
+	public long getSteamID() {
+		return steamID;
+	}
+
+	/**
+	 * Connects two users with each other.
+	 */
+	public void connect(SteamP2PLoopbackTransport remote) {
+		remotes.put(remote.steamID, remote);
+		remote.remotes.put(steamID, this);
+	}
+
+	public void disconnect(SteamP2PLoopbackTransport remote) {
+		remotes.remove(remote.steamID);
+		remote.remotes.remove(steamID);
+	}
+
+	/**
+	 * Sets the number of bytes delivered per call to {@link SteamP2PLoopbackTransport#deliverQueuedPackets()}.
+	 * With a rate of 0, the default, packets are delivered immediately.
+	 */
+	public void setSendRate(int bytesPerDelivery) {
+		sendRate = bytesPerDelivery;
+		if (sendRate == 0) {
+			deliverQueuedPackets();
+		}
+	}
+
+	/**
+	 * Delivers queued packets, in the order they have been sent, up to the send rate. The first packet is
+	 * always delivered, even if it's larger than the send rate. Returns the number of packets delivered.
+	 */
+	public int deliverQueuedPackets() {
+		int budget = sendRate;
+		int delivered = 0;
+
+		Packet packet;
+		while ((packet = sendQueue.peekFirst()) != null) {
+			int size = packet.data.length;
+			if (sendRate > 0 && delivered > 0 && size > budget) {
+				break;
+			}
+
+			sendQueue.pollFirst();
+			budget -= size;
+			delivered++;
+
+			SendQueueState state = sendQueueStates.get(packet.steamIDRemote);
+			state.bytesQueued -= size;
+			state.packetsQueued--;
+
+			deliver(packet.steamIDRemote, packet.channel, packet.data);
+		}
+
+		return delivered;
+	}
+
+	public long getPacketsSent() {
+		return packetsSent;
+	}
+
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	@Override
+	public boolean sendP2PPacket(long steamIDRemote, ByteBuffer data,
+								 SteamNetworking.P2PSend sendType, int channel) {
+
+		int size = data.remaining();
+
+		if (size > MaxUnreliablePacketSize && (sendType == SteamNetworking.P2PSend.Unreliable
+				|| sendType == SteamNetworking.P2PSend.UnreliableNoDelay)) {
+			return false;
+		}
+
+		byte[] bytes = new byte[size];
+		data.duplicate().get(bytes);
+
+		if (sendRate > 0) {
+			// packets in the send queue are addressed to the remote user
+			sendQueue.addLast(new Packet(steamIDRemote, channel, bytes));
+
+			SendQueueState state = sendQueueStates.get(steamIDRemote);
+			if (state == null) {
+				state = new SendQueueState();
+				sendQueueStates.put(steamIDRemote, state);
+			}
+			state.bytesQueued += size;
+			state.packetsQueued++;
+		} else {
+			deliver(steamIDRemote, channel, bytes);
+		}
+
+		packetsSent++;
+		bytesSent += size;
+
+		return true;
+	}
+
+	@Override
+	public int isP2PPacketAvailable(int channel) {
+		ArrayDeque<Packet> queue = channels.get(channel);
+		Packet packet = queue != null ? queue.peekFirst() : null;
+		return packet != null ? packet.data.length : 0;
+	}
+
+	@Override
+	public int readP2PPacket(ByteBuffer dest, int channel, long[] steamIDRemote) throws SteamException {
+		ArrayDeque<Packet> queue = channels.get(channel);
+		Packet packet = queue != null ? queue.pollFirst() : null;
+
+		if (packet == null) {
+			return 0;
+		}
+
+		int size = Math.min(packet.data.length, dest.remaining());
+		ByteBuffer target = dest.duplicate();
+		target.put(packet.data, 0, size);
+
+		steamIDRemote[0] = packet.steamIDRemote;
+		return size;
+	}
+
+	@Override
+	public void getP2PSendQueueStates(long[] steamIDsRemote, int count,
+									  int[] bytesQueuedForSend, int[] packetsQueuedForSend) {
+		for (int i = 0; i < count; i++) {
+			SendQueueState state = sendQueueStates.get(steamIDsRemote[i]);
+			bytesQueuedForSend[i] = state != null ? state.bytesQueued : 0;
+			packetsQueuedForSend[i] = state != null ? state.packetsQueued : 0;
+		}
+	}
+
+	private void deliver(long steamIDRemote, int channel, byte[] data) {
+		SteamP2PLoopbackTransport remote = remotes.get(steamIDRemote);
+		if (remote != null) {
+			remote.queue(channel).addLast(new Packet(steamID, channel, data));
+		}
+	}
+
+	private ArrayDeque<Packet> queue(int channel) {
+		ArrayDeque<Packet> queue = channels.get(channel);
+		if (queue == null) {
+			queue = new ArrayDeque<Packet>();
+			channels.put(channel, queue);
+		}
+		return queue;
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The subset of P2P functions used by the networking utility classes, like {@link SteamP2PFlowControl}.
+ * Users are addressed by native handles, see {@link SteamNativeHandle#getNativeHandle(SteamNativeHandle)}.
+ *
+ * {@link SteamNetworkingP2PTransport} implements this interface on top of {@link SteamNetworking}. Other
+ * implementations can be used to simulate network conditions, or to run without Steam.
+ */
+public interface SteamP2PTransport {
+
+	boolean sendP2PPacket(long steamIDRemote, ByteBuffer data,
+						  SteamNetworking.P2PSend sendType, int channel) throws SteamException;
+
+	/**
+	 * Returns the size of the next packet available on this channel, or 0.
+	 */
+	int isP2PPacketAvailable(int channel);
+
+	/**
+	 * Reads the next packet into a buffer, starting at <code>dest.position()</code>. Returns the number of bytes
+	 * received, or 0. The sender's ID is stored in <code>steamIDRemote[0]</code>.
+	 */
+	int readP2PPacket(ByteBuffer dest, int channel, long[] steamIDRemote) throws SteamException;
+
+	/**
+	 * Queries the send queue state of the first <code>count</code> users of a list. Users without a session
+	 * report zero bytes and packets.
+	 */
+	void getP2PSendQueueStates(long[] steamIDsRemote, int count,
+							   int[] bytesQueuedForSend, int[] packetsQueuedForSend) throws SteamException;
+
+}
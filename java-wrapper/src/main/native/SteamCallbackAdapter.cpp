@@ -1,32 +1,182 @@
 #include "SteamCallbackAdapter.h"
+#include "SteamCallbackQueue.h"
+
+#ifdef WINDOWS
+	#include <windows.h>
+#else
+	#include <pthread.h>
+#endif
+
+bool SteamCallbackAdapter::s_keepThreadsAttached = false;
+volatile jlong SteamCallbackAdapter::s_threadAttachCount = 0;
+
+#ifdef WINDOWS
+
+	static DWORD s_attachedThreadKey = FLS_OUT_OF_INDEXES;
+
+	static VOID WINAPI detachOnThreadExit(PVOID vm) {
+		if (vm != NULL) {
+			((JavaVM*) vm)->DetachCurrentThread();
+		}
+	}
+
+	static void createAttachedThreadKey() {
+		if (s_attachedThreadKey == FLS_OUT_OF_INDEXES) {
+			s_attachedThreadKey = FlsAlloc(detachOnThreadExit);
+		}
+	}
+
+	static bool registerAttachedThread(JavaVM* vm) {
+		return s_attachedThreadKey != FLS_OUT_OF_INDEXES && FlsSetValue(s_attachedThreadKey, vm);
+	}
+
+	static void countThreadAttach(volatile jlong* count) {
+		InterlockedIncrement64((volatile LONG64*) count);
+	}
+
+	static bool tryLock(volatile int* lock) {
+		return InterlockedCompareExchange((volatile LONG*) lock, 1, 0) == 0;
+	}
+
+	static void unlock(volatile int* lock) {
+		InterlockedExchange((volatile LONG*) lock, 0);
+	}
+
+	static int loadAcquire(volatile int* value) {
+		// loads are not reordered with other loads on x86 and x64, only the compiler needs a barrier
+		int result = *value;
+		_ReadWriteBarrier();
+		return result;
+	}
+
+	static void storeRelease(volatile int* value, int newValue) {
+		MemoryBarrier();
+		*value = newValue;
+	}
+
+#else
+
+	static pthread_key_t s_attachedThreadKey;
+	static bool s_attachedThreadKeyCreated = false;
+
+	static void detachOnThreadExit(void* vm) {
+		((JavaVM*) vm)->DetachCurrentThread();
+	}
+
+	static void createAttachedThreadKey() {
+		if (!s_attachedThreadKeyCreated) {
+			s_attachedThreadKeyCreated = pthread_key_create(&s_attachedThreadKey, detachOnThreadExit) == 0;
+		}
+	}
+
+	static bool registerAttachedThread(JavaVM* vm) {
+		return s_attachedThreadKeyCreated && pthread_setspecific(s_attachedThreadKey, vm) == 0;
+	}
+
+	static void countThreadAttach(volatile jlong* count) {
+		__sync_fetch_and_add(count, 1);
+	}
+
+	static bool tryLock(volatile int* lock) {
+		return __sync_bool_compare_and_swap(lock, 0, 1);
+	}
+
+	static void unlock(volatile int* lock) {
+		__sync_lock_release(lock);
+	}
+
+	static int loadAcquire(volatile int* value) {
+		return __atomic_load_n(value, __ATOMIC_ACQUIRE);
+	}
+
+	static void storeRelease(volatile int* value, int newValue) {
+		__atomic_store_n(value, newValue, __ATOMIC_RELEASE);
+	}
+
+#endif
+
+void SteamCallbackAdapter::setKeepThreadsAttached(bool keepAttached) {
+	if (keepAttached) {
+		createAttachedThreadKey();
+	}
+	s_keepThreadsAttached = keepAttached;
+}
+
+jlong SteamCallbackAdapter::getThreadAttachCount() {
+	return s_threadAttachCount;
+}
 
 SteamCallbackAdapter::SteamCallbackAdapter(JNIEnv* env, jobject callback) {
 	env->GetJavaVM(&m_vm);
 	m_callback = env->NewGlobalRef(callback);
-	m_callbackClass = 0;
+	// holding a global reference keeps the class loaded as long as any cached method ID is in use
+	jclass clazz = env->GetObjectClass(callback);
+	m_callbackClass = clazz != 0 ? (jclass) env->NewGlobalRef(clazz) : 0;
+	env->DeleteLocalRef(clazz);
+	m_numMethodIDs = 0;
+	m_methodIDsLock = 0;
+	m_queue = 0;
+	m_queueAdapterIndex = -1;
 }
 
 SteamCallbackAdapter::SteamCallbackAdapter(JNIEnv* env, jclass callbackClass) {
 	env->GetJavaVM(&m_vm);
 	m_callback = 0;
-	m_callbackClass = callbackClass;
+	m_callbackClass = (jclass) env->NewGlobalRef(callbackClass);
+	m_numMethodIDs = 0;
+	m_methodIDsLock = 0;
+	m_queue = 0;
+	m_queueAdapterIndex = -1;
 }
 
 SteamCallbackAdapter::~SteamCallbackAdapter() {
-    if (m_callback != 0) {
+    if (m_callback != 0 || m_callbackClass != 0) {
         JNIEnv* env;
         bool attached = attachThread(&env);
-        env->DeleteGlobalRef(m_callback);
+        if (m_callback != 0) {
+            env->DeleteGlobalRef(m_callback);
+        }
+        if (m_callbackClass != 0) {
+            env->DeleteGlobalRef(m_callbackClass);
+        }
         if (attached) {
             detachThread();
         }
     }
 }
 
+void SteamCallbackAdapter::setCallbackQueue(SteamCallbackQueue* queue, jshort adapterIndex) {
+	m_queue = queue;
+	m_queueAdapterIndex = adapterIndex;
+}
+
+bool SteamCallbackAdapter::queueEvent(jshort eventType, const void* data, jint size) const {
+	if (m_queue == 0 || !m_queue->canHold(size)) {
+		return false;
+	}
+
+	if (!m_queue->fits(size)) {
+		// queue is full, let Java drain what we have so far
+		JNIEnv* env;
+		bool attached = attachThread(&env);
+		m_queue->flush(env);
+		if (attached) {
+			detachThread();
+		}
+	}
+
+	m_queue->push(m_queueAdapterIndex, eventType, data, size);
+	return true;
+}
+
 void SteamCallbackAdapter::attach(SteamInvokeCallbackFunction fn) const {
     JNIEnv* env;
     bool attached = attachThread(&env);
+    bool framePushed = env->PushLocalFrame(LocalFrameCapacity) == 0;
     fn(env);
+    if (framePushed) {
+        env->PopLocalFrame(NULL);
+    }
     if (attached) {
         detachThread();
     }
@@ -35,6 +185,15 @@ void SteamCallbackAdapter::attach(SteamInvokeCallbackFunction fn) const {
 bool SteamCallbackAdapter::attachThread(JNIEnv** env) const {
     jint status = m_vm->GetEnv((void**) env, JNI_VERSION_1_6);
     if (status == JNI_EDETACHED) {
+    	countThreadAttach(&s_threadAttachCount);
+    	if (s_keepThreadsAttached) {
+    		// attach once, the thread is detached by the thread-local destructor when it exits
+    		m_vm->AttachCurrentThreadAsDaemon((void**) env, NULL);
+    		if (registerAttachedThread(m_vm)) {
+    			return false;
+    		}
+    		return true;
+    	}
     	m_vm->AttachCurrentThread((void**) env, NULL);
     	return true;
     }
@@ -46,47 +205,89 @@ void SteamCallbackAdapter::detachThread() const {
 }
 
 void SteamCallbackAdapter::callVoidMethod(JNIEnv* env, const char* method, const char* signature, ...) const {
-	jclass clazz = env->GetObjectClass(m_callback);
-	jclass ex = env->FindClass("com/codedisaster/steamworks/SteamException");
-	if (clazz == 0) {
-	    env->ThrowNew(ex, "Couldn't retrieve class for callback object.");
-	} else {
-		jmethodID methodID = env->GetMethodID(clazz, method, signature);
-		if (methodID == 0) {
-    	    env->ThrowNew(ex, "Couldn't retrieve callback method.");
-		} else {
-			va_list args;
-			va_start(args, signature);
-			env->CallVoidMethodV(m_callback, methodID, args);
-			va_end(args);
-
-			jthrowable ex = env->ExceptionOccurred();
-			if (ex != NULL) {
-				env->ExceptionDescribe();
-				env->ExceptionClear();
-				env->DeleteLocalRef(ex);
-			}
-		}
-		env->DeleteLocalRef(clazz);
+	if (m_queue != 0 && !m_queue->isEmpty()) {
+		// dispatch queued events first, to keep callbacks in order
+		m_queue->flush(env);
+	}
+
+	jmethodID methodID = getMethodID(env, method, signature, false);
+	if (methodID != 0) {
+		va_list args;
+		va_start(args, signature);
+		env->CallVoidMethodV(m_callback, methodID, args);
+		va_end(args);
+
+		clearException(env);
 	}
 }
 
 void SteamCallbackAdapter::callStaticVoidMethod(JNIEnv* env, const char* method, const char* signature, ...) const {
-	jmethodID methodID = env->GetStaticMethodID(m_callbackClass, method, signature);
-	jclass ex = env->FindClass("com/codedisaster/steamworks/SteamException");
-	if (methodID == 0) {
-	    env->ThrowNew(ex, "Couldn't retrieve static callback method.");
-	} else {
+	jmethodID methodID = getMethodID(env, method, signature, true);
+	if (methodID != 0) {
 		va_list args;
 		va_start(args, signature);
 		env->CallStaticVoidMethodV(m_callbackClass, methodID, args);
 		va_end(args);
 
-		jthrowable ex = env->ExceptionOccurred();
-		if (ex != NULL) {
-			env->ExceptionDescribe();
-			env->ExceptionClear();
-			env->DeleteLocalRef(ex);
+		clearException(env);
+	}
+}
+
+jmethodID SteamCallbackAdapter::getMethodID(JNIEnv* env, const char* method, const char* signature, bool isStatic) const {
+	int numMethodIDs = loadAcquire(&m_numMethodIDs);
+	for (int i = 0; i < numMethodIDs; i++) {
+		const MethodIDCacheEntry& entry = m_methodIDs[i];
+		if (entry.method == method && entry.signature == signature) {
+			return entry.methodID;
+		}
+	}
+
+	if (m_callbackClass == 0) {
+		throwSteamException(env, "Couldn't retrieve class for callback object.");
+		return 0;
+	}
+
+	jmethodID methodID = isStatic
+		? env->GetStaticMethodID(m_callbackClass, method, signature)
+		: env->GetMethodID(m_callbackClass, method, signature);
+
+	if (methodID == 0) {
+		env->ExceptionClear();
+		throwSteamException(env, isStatic ? "Couldn't retrieve static callback method." : "Couldn't retrieve callback method.");
+		return 0;
+	}
+
+	// entries are filled by one thread at a time, and published by raising the count afterwards, so
+	// concurrent readers only see complete entries. If the cache is full, or another thread is adding
+	// an entry, the method ID is just looked up again next time.
+	if (tryLock(&m_methodIDsLock)) {
+		int count = m_numMethodIDs;
+		bool cached = false;
+		for (int i = numMethodIDs; i < count; i++) {
+			cached |= m_methodIDs[i].method == method && m_methodIDs[i].signature == signature;
 		}
+		if (!cached && count < MethodIDCacheSize) {
+			MethodIDCacheEntry& entry = m_methodIDs[count];
+			entry.method = method;
+			entry.signature = signature;
+			entry.methodID = methodID;
+			storeRelease(&m_numMethodIDs, count + 1);
+		}
+		unlock(&m_methodIDsLock);
+	}
+
+	return methodID;
+}
+
+void SteamCallbackAdapter::throwSteamException(JNIEnv* env, const char* message) const {
+	jclass ex = env->FindClass("com/codedisaster/steamworks/SteamException");
+	env->ThrowNew(ex, message);
+	env->DeleteLocalRef(ex);
+}
+
+void SteamCallbackAdapter::clearException(JNIEnv* env) const {
+	if (env->ExceptionCheck()) {
+		env->ExceptionDescribe();
+		env->ExceptionClear();
 	}
 }
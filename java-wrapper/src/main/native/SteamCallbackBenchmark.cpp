@@ -0,0 +1,37 @@
+#include "SteamCallbackBenchmark.h"
+
+SteamCallbackBenchmark::SteamCallbackBenchmark(JNIEnv* env, jobject callback)
+	: SteamCallbackAdapter(env, callback) {
+
+}
+
+SteamCallbackBenchmark::~SteamCallbackBenchmark() {
+
+}
+
+void SteamCallbackBenchmark::dispatch(jint iterations) {
+	for (jint i = 0; i < iterations; i++) {
+		invokeCallback({
+			callVoidMethod(env, "onEvent", "(I)V", i);
+		});
+	}
+}
+
+void SteamCallbackBenchmark::dispatchUncached(jobject callback, jint iterations) {
+	for (jint i = 0; i < iterations; i++) {
+		invokeCallback({
+			jclass clazz = env->GetObjectClass(callback);
+			jclass ex = env->FindClass("com/codedisaster/steamworks/SteamException");
+			jmethodID methodID = env->GetMethodID(clazz, "onEvent", "(I)V");
+			if (methodID != 0) {
+				env->CallVoidMethod(callback, methodID, i);
+			}
+			if (env->ExceptionCheck()) {
+				env->ExceptionDescribe();
+				env->ExceptionClear();
+			}
+			env->DeleteLocalRef(ex);
+			env->DeleteLocalRef(clazz);
+		});
+	}
+}
@@ -0,0 +1,26 @@
+#pragma once
+
+#include "SteamCallbackAdapter.h"
+
+/**
+	Stub callback adapter, used by com.codedisaster.steamworks.SteamCallbackBenchmark to measure the cost of
+	invoking a Java callback from native code. It doesn't depend on the Steam API.
+*/
+class SteamCallbackBenchmark : public SteamCallbackAdapter {
+
+public:
+	SteamCallbackBenchmark(JNIEnv* env, jobject callback);
+	~SteamCallbackBenchmark();
+
+	/**
+		Invokes the callback through the method ID cache of the adapter.
+	*/
+	void dispatch(jint iterations);
+
+	/**
+		Invokes the callback the way adapters did before method IDs were cached: the callback class, the
+		exception class and the method ID are looked up for each call.
+	*/
+	void dispatchUncached(jobject callback, jint iterations);
+
+};
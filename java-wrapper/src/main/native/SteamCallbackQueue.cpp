@@ -0,0 +1,46 @@
+#include "SteamCallbackQueue.h"
+#include <string.h>
+
+SteamCallbackQueue::SteamCallbackQueue(JNIEnv* env, jobject javaQueue, jobject buffer)
+	: SteamCallbackAdapter(env, javaQueue) {
+
+	m_buffer = (jbyte*) env->GetDirectBufferAddress(buffer);
+	m_capacity = (jint) env->GetDirectBufferCapacity(buffer);
+}
+
+SteamCallbackQueue::~SteamCallbackQueue() {
+
+}
+
+bool SteamCallbackQueue::isEmpty() const {
+	return ((jint*) m_buffer)[1] == 0;
+}
+
+bool SteamCallbackQueue::fits(jint size) const {
+	return HeaderSize + ((jint*) m_buffer)[0] + recordSize(size) <= m_capacity;
+}
+
+bool SteamCallbackQueue::canHold(jint size) const {
+	return HeaderSize + recordSize(size) <= m_capacity;
+}
+
+void SteamCallbackQueue::push(jshort adapterIndex, jshort eventType, const void* data, jint size) {
+	jint* header = (jint*) m_buffer;
+	jbyte* record = m_buffer + HeaderSize + header[0];
+
+	*((jshort*) &record[0]) = adapterIndex;
+	*((jshort*) &record[2]) = eventType;
+	*((jint*) &record[4]) = size;
+	memcpy(&record[RecordHeaderSize], data, size);
+
+	header[0] += recordSize(size);
+	header[1] += 1;
+}
+
+void SteamCallbackQueue::flush(JNIEnv* env) const {
+	callVoidMethod(env, "flush", "()V");
+}
+
+jint SteamCallbackQueue::recordSize(jint size) {
+	return RecordHeaderSize + ((size + 7) & ~7);
+}
@@ -0,0 +1,34 @@
+#pragma once
+
+#include "SteamCallbackAdapter.h"
+
+/**
+	Native side of com.codedisaster.steamworks.SteamCallbackQueue. Callback adapters serialize events into a
+	direct buffer shared with Java, which decodes and dispatches them in one loop.
+
+	Buffer layout, in native byte order:
+	- header: total size of queued records in bytes (int), number of queued records (int)
+	- records: adapter index (short), event type (short), payload size (int), payload padded to 8 bytes
+*/
+class SteamCallbackQueue : public SteamCallbackAdapter {
+
+public:
+	SteamCallbackQueue(JNIEnv* env, jobject javaQueue, jobject buffer);
+	~SteamCallbackQueue();
+
+	bool isEmpty() const;
+	bool fits(jint size) const;
+	bool canHold(jint size) const;
+
+	void push(jshort adapterIndex, jshort eventType, const void* data, jint size);
+	void flush(JNIEnv* env) const;
+
+	static const jint HeaderSize = 8;
+	static const jint RecordHeaderSize = 8;
+
+private:
+	static jint recordSize(jint size);
+
+	jbyte* m_buffer;
+	jint m_capacity;
+};
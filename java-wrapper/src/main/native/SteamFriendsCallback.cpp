@@ -1,5 +1,41 @@
 #include "SteamFriendsCallback.h"
 
+// event records for SteamCallbackQueue, must match SteamFriendsCallbackAdapter
+
+enum {
+	PersonaStateChangeEvent = 1,
+	GameOverlayActivatedEvent,
+	GameLobbyJoinRequestedEvent,
+	AvatarImageLoadedEvent,
+	FriendRichPresenceUpdateEvent
+};
+
+struct PersonaStateChangeRecord {
+	jlong steamID;
+	jint changeFlags;
+};
+
+struct GameOverlayActivatedRecord {
+	jint active;
+};
+
+struct GameLobbyJoinRequestedRecord {
+	jlong steamIDLobby;
+	jlong steamIDFriend;
+};
+
+struct AvatarImageLoadedRecord {
+	jlong steamID;
+	jint image;
+	jint width;
+	jint height;
+};
+
+struct FriendRichPresenceUpdateRecord {
+	jlong steamIDFriend;
+	jint appID;
+};
+
 SteamFriendsCallback::SteamFriendsCallback(JNIEnv* env, jobject callback)
 	: SteamCallbackAdapter(env, callback)
 	, m_CallbackPersonaStateChange(this, &SteamFriendsCallback::onPersonaStateChange)
@@ -24,6 +60,11 @@ void SteamFriendsCallback::onSetPersonaNameResponse(SetPersonaNameResponse_t* ca
 }
 
 void SteamFriendsCallback::onPersonaStateChange(PersonaStateChange_t* callback) {
+	PersonaStateChangeRecord event = { (jlong) callback->m_ulSteamID, (jint) callback->m_nChangeFlags };
+	if (queueEvent(PersonaStateChangeEvent, &event, sizeof(event))) {
+		return;
+	}
+
 	invokeCallback({
 		callVoidMethod(env, "onPersonaStateChange", "(JI)V",
 			(jlong) callback->m_ulSteamID, (jint) callback->m_nChangeFlags);
@@ -31,12 +72,23 @@ void SteamFriendsCallback::onPersonaStateChange(PersonaStateChange_t* callback)
 }
 
 void SteamFriendsCallback::onGameOverlayActivated(GameOverlayActivated_t* callback) {
+	GameOverlayActivatedRecord event = { (jint) callback->m_bActive };
+	if (queueEvent(GameOverlayActivatedEvent, &event, sizeof(event))) {
+		return;
+	}
+
 	invokeCallback({
 		callVoidMethod(env, "onGameOverlayActivated", "(Z)V", callback->m_bActive);
 	});
 }
 
 void SteamFriendsCallback::onGameLobbyJoinRequested(GameLobbyJoinRequested_t* callback) {
+	GameLobbyJoinRequestedRecord event = { (jlong) callback->m_steamIDLobby.ConvertToUint64(),
+		(jlong) callback->m_steamIDFriend.ConvertToUint64() };
+	if (queueEvent(GameLobbyJoinRequestedEvent, &event, sizeof(event))) {
+		return;
+	}
+
 	invokeCallback({
 		callVoidMethod(env, "onGameLobbyJoinRequested", "(JJ)V",
 			(jlong) callback->m_steamIDLobby.ConvertToUint64(),
@@ -45,6 +97,12 @@ void SteamFriendsCallback::onGameLobbyJoinRequested(GameLobbyJoinRequested_t* ca
 }
 
 void SteamFriendsCallback::onAvatarImageLoaded(AvatarImageLoaded_t* callback) {
+	AvatarImageLoadedRecord event = { (jlong) callback->m_steamID.ConvertToUint64(),
+		callback->m_iImage, callback->m_iWide, callback->m_iTall };
+	if (queueEvent(AvatarImageLoadedEvent, &event, sizeof(event))) {
+		return;
+	}
+
 	invokeCallback({
 		callVoidMethod(env, "onAvatarImageLoaded", "(JIII)V",
 			(jlong) callback->m_steamID.ConvertToUint64(), callback->m_iImage,
@@ -53,6 +111,12 @@ void SteamFriendsCallback::onAvatarImageLoaded(AvatarImageLoaded_t* callback) {
 }
 
 void SteamFriendsCallback::onFriendRichPresenceUpdate(FriendRichPresenceUpdate_t* callback) {
+	FriendRichPresenceUpdateRecord event = { (jlong) callback->m_steamIDFriend.ConvertToUint64(),
+		(jint) callback->m_nAppID };
+	if (queueEvent(FriendRichPresenceUpdateEvent, &event, sizeof(event))) {
+		return;
+	}
+
 	invokeCallback({
 		callVoidMethod(env, "onFriendRichPresenceUpdate", "(JI)V",
 			(jlong) callback->m_steamIDFriend.ConvertToUint64(), callback->m_nAppID);
@@ -0,0 +1,81 @@
+#include "SteamLobbyChatRing.h"
+#include <string.h>
+
+SteamLobbyChatRing::SteamLobbyChatRing(JNIEnv* env, jobject buffer, jlong steamIDLobby)
+	: next(0)
+	, m_steamIDLobby(steamIDLobby) {
+
+	m_buffer = (jbyte*) env->GetDirectBufferAddress(buffer);
+	m_capacity = (jint) env->GetDirectBufferCapacity(buffer) - HeaderSize;
+}
+
+SteamLobbyChatRing::~SteamLobbyChatRing() {
+
+}
+
+jlong SteamLobbyChatRing::getSteamIDLobby() const {
+	return m_steamIDLobby;
+}
+
+bool SteamLobbyChatRing::receive(ISteamMatchmaking* matchmaking, jint chatID) {
+	jint* header = (jint*) m_buffer;
+	jbyte* data = m_buffer + HeaderSize;
+
+	// read into scratch space first, so the ring only needs room for the actual payload
+	CSteamID steamIDUser;
+	EChatEntryType chatEntryType;
+	int received = matchmaking->GetLobbyChatEntry((uint64) m_steamIDLobby, chatID, &steamIDUser,
+		m_scratch, MaxPayloadSize, &chatEntryType);
+
+	if (received < 0) {
+		received = 0;
+	}
+
+	const jint required = RecordHeaderSize + ((received + 7) & ~7);
+
+	if (header[2] == 0) {
+		// empty, start over to keep the space contiguous
+		header[0] = 0;
+		header[1] = 0;
+	}
+
+	jint write = header[0];
+	jint read = header[1];
+
+	bool fits;
+	if (header[2] > 0 && write == read) {
+		fits = false;
+	} else if (write >= read) {
+		fits = m_capacity - write >= required;
+		if (!fits && read >= required) {
+			// wrap around, leave a marker for the reader
+			*((jint*) &data[write]) = -1;
+			write = 0;
+			fits = true;
+		}
+	} else {
+		fits = read - write >= required;
+	}
+
+	if (!fits) {
+		header[3] += 1;
+		return false;
+	}
+
+	jbyte* record = &data[write];
+
+	*((jint*) &record[0]) = (jint) received;
+	*((jint*) &record[4]) = (jint) chatEntryType;
+	*((jlong*) &record[8]) = (jlong) steamIDUser.ConvertToUint64();
+	memcpy(&record[RecordHeaderSize], m_scratch, received);
+
+	write += required;
+	if (write == m_capacity) {
+		write = 0;
+	}
+
+	header[0] = write;
+	header[2] += 1;
+
+	return true;
+}
@@ -0,0 +1,41 @@
+#pragma once
+
+#include <jni.h>
+#include <steam_api.h>
+
+/**
+	Native side of com.codedisaster.steamworks.SteamLobbyChatRing. Chat entries of one lobby are read with
+	GetLobbyChatEntry() into scratch space, then copied into a direct buffer shared with Java, taking only
+	as much space as the payload needs.
+
+	Buffer layout, in native byte order:
+	- header: write offset (int), read offset (int), number of entries (int), number of dropped entries (int)
+	- records: payload size (int), chat entry type (int), user ID (long), payload padded to 8 bytes
+
+	A payload size of -1 marks the end of the used space, the next record starts at offset 0.
+*/
+class SteamLobbyChatRing {
+
+public:
+	SteamLobbyChatRing(JNIEnv* env, jobject buffer, jlong steamIDLobby);
+	~SteamLobbyChatRing();
+
+	jlong getSteamIDLobby() const;
+
+	/**
+		Reads a chat entry into the ring. Returns false, and counts the entry as dropped, if the ring is full.
+	*/
+	bool receive(ISteamMatchmaking* matchmaking, jint chatID);
+
+	static const jint HeaderSize = 16;
+	static const jint RecordHeaderSize = 16;
+	static const jint MaxPayloadSize = 4096;
+
+	SteamLobbyChatRing* next;
+
+private:
+	jbyte* m_buffer;
+	jint m_capacity;
+	jlong m_steamIDLobby;
+	jbyte m_scratch[MaxPayloadSize];
+};
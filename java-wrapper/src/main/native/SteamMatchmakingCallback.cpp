@@ -1,12 +1,55 @@
 #include "SteamMatchmakingCallback.h"
 
+// event records for SteamCallbackQueue, must match SteamMatchmakingCallbackAdapter
+
+enum {
+	LobbyInviteEvent = 1,
+	LobbyKickedEvent,
+	LobbyDataUpdateEvent,
+	LobbyChatUpdateEvent,
+	LobbyChatMsgEvent
+};
+
+struct LobbyInviteRecord {
+	jlong steamIDUser;
+	jlong steamIDLobby;
+	jlong gameID;
+};
+
+struct LobbyKickedRecord {
+	jlong steamIDLobby;
+	jlong steamIDAdmin;
+	jint kickedDueToDisconnect;
+};
+
+struct LobbyDataUpdateRecord {
+	jlong steamIDLobby;
+	jlong steamIDMember;
+	jint success;
+};
+
+struct LobbyChatUpdateRecord {
+	jlong steamIDLobby;
+	jlong steamIDUserChanged;
+	jlong steamIDMakingChange;
+	jint stateChange;
+};
+
+struct LobbyChatMsgRecord {
+	jlong steamIDLobby;
+	jlong steamIDUser;
+	jint chatEntryType;
+	jint chatID;
+};
+
 SteamMatchmakingCallback::SteamMatchmakingCallback(JNIEnv* env, jobject callback)
 	: SteamCallbackAdapter(env, callback)
 	, m_CallbackLobbyInvite(this, &SteamMatchmakingCallback::onLobbyInvite)
 	, m_CallbackLobbyKicked(this, &SteamMatchmakingCallback::onLobbyKicked)
 	, m_CallbackLobbyDataUpdate(this, &SteamMatchmakingCallback::onLobbyDataUpdate)
 	, m_CallbackLobbyChatUpdate(this, &SteamMatchmakingCallback::onLobbyChatUpdate)
-	, m_CallbackLobbyChatMsg(this, &SteamMatchmakingCallback::onLobbyChatMsg) {
+	, m_CallbackLobbyChatMsg(this, &SteamMatchmakingCallback::onLobbyChatMsg)
+	, m_chatRings(0) {
 
 }
 
@@ -14,6 +57,24 @@ SteamMatchmakingCallback::~SteamMatchmakingCallback() {
 
 }
 
+void SteamMatchmakingCallback::addChatRing(SteamLobbyChatRing* ring) {
+	removeChatRing(ring);
+	ring->next = m_chatRings;
+	m_chatRings = ring;
+}
+
+void SteamMatchmakingCallback::removeChatRing(SteamLobbyChatRing* ring) {
+	SteamLobbyChatRing** link = &m_chatRings;
+	while (*link != 0) {
+		if (*link == ring) {
+			*link = ring->next;
+			ring->next = 0;
+			return;
+		}
+		link = &(*link)->next;
+	}
+}
+
 void SteamMatchmakingCallback::onLobbyMatchList(LobbyMatchList_t* callback, bool error) {
 	invokeCallback({
 		callVoidMethod(env, "onLobbyMatchList", "(I)V", (jint) callback->m_nLobbiesMatching);
@@ -36,6 +97,12 @@ void SteamMatchmakingCallback::onLobbyEnter(LobbyEnter_t* callback, bool error)
 }
 
 void SteamMatchmakingCallback::onLobbyInvite(LobbyInvite_t* callback) {
+	LobbyInviteRecord event = { (jlong) callback->m_ulSteamIDUser,
+		(jlong) callback->m_ulSteamIDLobby, (jlong) callback->m_ulGameID };
+	if (queueEvent(LobbyInviteEvent, &event, sizeof(event))) {
+		return;
+	}
+
 	invokeCallback({
 		callVoidMethod(env, "onLobbyInvite", "(JJJ)V", (jlong) callback->m_ulSteamIDUser,
 			(jlong) callback->m_ulSteamIDLobby, (jlong) callback->m_ulGameID);
@@ -43,6 +110,12 @@ void SteamMatchmakingCallback::onLobbyInvite(LobbyInvite_t* callback) {
 }
 
 void SteamMatchmakingCallback::onLobbyKicked(LobbyKicked_t* callback) {
+	LobbyKickedRecord event = { (jlong) callback->m_ulSteamIDLobby,
+		(jlong) callback->m_ulSteamIDAdmin, (jint) callback->m_bKickedDueToDisconnect };
+	if (queueEvent(LobbyKickedEvent, &event, sizeof(event))) {
+		return;
+	}
+
 	invokeCallback({
 		callVoidMethod(env, "onLobbyKicked", "(JJZ)V", (jlong) callback->m_ulSteamIDLobby,
 			(jlong) callback->m_ulSteamIDAdmin, callback->m_bKickedDueToDisconnect);
@@ -50,6 +123,12 @@ void SteamMatchmakingCallback::onLobbyKicked(LobbyKicked_t* callback) {
 }
 
 void SteamMatchmakingCallback::onLobbyDataUpdate(LobbyDataUpdate_t* callback) {
+	LobbyDataUpdateRecord event = { (jlong) callback->m_ulSteamIDLobby,
+		(jlong) callback->m_ulSteamIDMember, (jint) callback->m_bSuccess };
+	if (queueEvent(LobbyDataUpdateEvent, &event, sizeof(event))) {
+		return;
+	}
+
 	invokeCallback({
 		callVoidMethod(env, "onLobbyDataUpdate", "(JJZ)V", (jlong) callback->m_ulSteamIDLobby,
 			(jlong) callback->m_ulSteamIDMember, callback->m_bSuccess);
@@ -57,6 +136,13 @@ void SteamMatchmakingCallback::onLobbyDataUpdate(LobbyDataUpdate_t* callback) {
 }
 
 void SteamMatchmakingCallback::onLobbyChatUpdate(LobbyChatUpdate_t* callback) {
+	LobbyChatUpdateRecord event = { (jlong) callback->m_ulSteamIDLobby,
+		(jlong) callback->m_ulSteamIDUserChanged, (jlong) callback->m_ulSteamIDMakingChange,
+		(jint) callback->m_rgfChatMemberStateChange };
+	if (queueEvent(LobbyChatUpdateEvent, &event, sizeof(event))) {
+		return;
+	}
+
 	invokeCallback({
 		callVoidMethod(env, "onLobbyChatUpdate", "(JJJI)V", (jlong) callback->m_ulSteamIDLobby,
 			(jlong) callback->m_ulSteamIDUserChanged, (jlong) callback->m_ulSteamIDMakingChange,
@@ -65,6 +151,18 @@ void SteamMatchmakingCallback::onLobbyChatUpdate(LobbyChatUpdate_t* callback) {
 }
 
 void SteamMatchmakingCallback::onLobbyChatMsg(LobbyChatMsg_t* callback) {
+	for (SteamLobbyChatRing* ring = m_chatRings; ring != 0; ring = ring->next) {
+		if (ring->getSteamIDLobby() == (jlong) callback->m_ulSteamIDLobby) {
+			ring->receive(SteamMatchmaking(), (jint) callback->m_iChatID);
+		}
+	}
+
+	LobbyChatMsgRecord event = { (jlong) callback->m_ulSteamIDLobby,
+		(jlong) callback->m_ulSteamIDUser, (jint) callback->m_eChatEntryType, (jint) callback->m_iChatID };
+	if (queueEvent(LobbyChatMsgEvent, &event, sizeof(event))) {
+		return;
+	}
+
 	invokeCallback({
 		callVoidMethod(env, "onLobbyChatMessage", "(JJII)V", (jlong) callback->m_ulSteamIDLobby,
 			(jlong) callback->m_ulSteamIDUser, (jint) callback->m_eChatEntryType,
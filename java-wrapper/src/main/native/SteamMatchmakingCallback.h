@@ -1,6 +1,7 @@
 #pragma once
 
 #include "SteamCallbackAdapter.h"
+#include "SteamLobbyChatRing.h"
 #include <steam_api.h>
 
 class SteamMatchmakingCallback : public SteamCallbackAdapter {
@@ -23,4 +24,10 @@ public:
 
 	void onLobbyEnter(LobbyEnter_t* callback, bool error);
 	CCallResult<SteamMatchmakingCallback, LobbyEnter_t> onLobbyEnterCall;
+
+	void addChatRing(SteamLobbyChatRing* ring);
+	void removeChatRing(SteamLobbyChatRing* ring);
+
+private:
+	SteamLobbyChatRing* m_chatRings;
 };
@@ -1,5 +1,21 @@
 #include "SteamNetworkingCallback.h"
 
+// event records for SteamCallbackQueue, must match SteamNetworkingCallbackAdapter
+
+enum {
+	P2PSessionConnectFailEvent = 1,
+	P2PSessionRequestEvent
+};
+
+struct P2PSessionConnectFailRecord {
+	jlong steamIDRemote;
+	jint sessionError;
+};
+
+struct P2PSessionRequestRecord {
+	jlong steamIDRemote;
+};
+
 SteamNetworkingCallback::SteamNetworkingCallback(JNIEnv* env, jobject callback)
 	: SteamCallbackAdapter(env, callback)
 	, m_CallbackP2PSessionConnectFail(this, &SteamNetworkingCallback::onP2PSessionConnectFail)
@@ -12,6 +28,12 @@ SteamNetworkingCallback::~SteamNetworkingCallback() {
 }
 
 void SteamNetworkingCallback::onP2PSessionConnectFail(P2PSessionConnectFail_t* callback) {
+	P2PSessionConnectFailRecord event = { (jlong) callback->m_steamIDRemote.ConvertToUint64(),
+		(jint) callback->m_eP2PSessionError };
+	if (queueEvent(P2PSessionConnectFailEvent, &event, sizeof(event))) {
+		return;
+	}
+
 	invokeCallback({
 		callVoidMethod(env, "onP2PSessionConnectFail", "(JI)V",
 			(jlong) callback->m_steamIDRemote.ConvertToUint64(), (jint) callback->m_eP2PSessionError);
@@ -19,6 +41,11 @@ void SteamNetworkingCallback::onP2PSessionConnectFail(P2PSessionConnectFail_t* c
 }
 
 void SteamNetworkingCallback::onP2PSessionRequest(P2PSessionRequest_t* callback) {
+	P2PSessionRequestRecord event = { (jlong) callback->m_steamIDRemote.ConvertToUint64() };
+	if (queueEvent(P2PSessionRequestEvent, &event, sizeof(event))) {
+		return;
+	}
+
 	invokeCallback({
 		callVoidMethod(env, "onP2PSessionRequest", "(J)V",
 			(jlong) callback->m_steamIDRemote.ConvertToUint64());
@@ -0,0 +1,105 @@
+#include "SteamNetworkingStub.h"
+
+SteamNetworkingStub::SteamNetworkingStub()
+	: m_packetsSent(0)
+	, m_bytesSent(0) {
+
+}
+
+long long SteamNetworkingStub::getPacketsSent() const {
+	return m_packetsSent;
+}
+
+long long SteamNetworkingStub::getBytesSent() const {
+	return m_bytesSent;
+}
+
+bool SteamNetworkingStub::SendP2PPacket(CSteamID steamIDRemote, const void* pubData, uint32 cubData, EP2PSend eP2PSendType, int nChannel) {
+	m_packetsSent++;
+	m_bytesSent += cubData;
+	return true;
+}
+
+bool SteamNetworkingStub::IsP2PPacketAvailable(uint32* pcubMsgSize, int nChannel) {
+	return false;
+}
+
+bool SteamNetworkingStub::ReadP2PPacket(void* pubDest, uint32 cubDest, uint32* pcubMsgSize, CSteamID* psteamIDRemote, int nChannel) {
+	return false;
+}
+
+bool SteamNetworkingStub::AcceptP2PSessionWithUser(CSteamID steamIDRemote) {
+	return false;
+}
+
+bool SteamNetworkingStub::CloseP2PSessionWithUser(CSteamID steamIDRemote) {
+	return false;
+}
+
+bool SteamNetworkingStub::CloseP2PChannelWithUser(CSteamID steamIDRemote, int nChannel) {
+	return false;
+}
+
+bool SteamNetworkingStub::GetP2PSessionState(CSteamID steamIDRemote, P2PSessionState_t* pConnectionState) {
+	return false;
+}
+
+bool SteamNetworkingStub::AllowP2PPacketRelay(bool bAllow) {
+	return false;
+}
+
+SNetListenSocket_t SteamNetworkingStub::CreateListenSocket(int nVirtualP2PPort, uint32 nIP, uint16 nPort, bool bAllowUseOfPacketRelay) {
+	return 0;
+}
+
+SNetSocket_t SteamNetworkingStub::CreateP2PConnectionSocket(CSteamID steamIDTarget, int nVirtualPort, int nTimeoutSec, bool bAllowUseOfPacketRelay) {
+	return 0;
+}
+
+SNetSocket_t SteamNetworkingStub::CreateConnectionSocket(uint32 nIP, uint16 nPort, int nTimeoutSec) {
+	return 0;
+}
+
+bool SteamNetworkingStub::DestroySocket(SNetSocket_t hSocket, bool bNotifyRemoteEnd) {
+	return false;
+}
+
+bool SteamNetworkingStub::DestroyListenSocket(SNetListenSocket_t hSocket, bool bNotifyRemoteEnd) {
+	return false;
+}
+
+bool SteamNetworkingStub::SendDataOnSocket(SNetSocket_t hSocket, void* pubData, uint32 cubData, bool bReliable) {
+	return false;
+}
+
+bool SteamNetworkingStub::IsDataAvailableOnSocket(SNetSocket_t hSocket, uint32* pcubMsgSize) {
+	return false;
+}
+
+bool SteamNetworkingStub::RetrieveDataFromSocket(SNetSocket_t hSocket, void* pubDest, uint32 cubDest, uint32* pcubMsgSize) {
+	return false;
+}
+
+bool SteamNetworkingStub::IsDataAvailable(SNetListenSocket_t hListenSocket, uint32* pcubMsgSize, SNetSocket_t* phSocket) {
+	return false;
+}
+
+bool SteamNetworkingStub::RetrieveData(SNetListenSocket_t hListenSocket, void* pubDest, uint32 cubDest, uint32* pcubMsgSize, SNetSocket_t* phSocket) {
+	return false;
+}
+
+bool SteamNetworkingStub::GetSocketInfo(SNetSocket_t hSocket, CSteamID* pSteamIDRemote, int* peSocketStatus, uint32* punIPRemote, uint16* punPortRemote) {
+	return false;
+}
+
+bool SteamNetworkingStub::GetListenSocketInfo(SNetListenSocket_t hListenSocket, uint32* pnIP, uint16* pnPort) {
+	return false;
+}
+
+ESNetSocketConnectionType SteamNetworkingStub::GetSocketConnectionType(SNetSocket_t hSocket) {
+	return k_ESNetSocketConnectionTypeNotConnected;
+}
+
+int SteamNetworkingStub::GetMaxPacketSize(SNetSocket_t hSocket) {
+	return 0;
+}
@@ -0,0 +1,44 @@
+#pragma once
+
+#include <steam_api.h>
+
+/**
+	Stub implementation of ISteamNetworking, used by com.codedisaster.steamworks.SteamNetworkingBenchmark.
+	P2P packets are accepted and counted, but not sent anywhere. All other functions fail.
+*/
+class SteamNetworkingStub : public ISteamNetworking {
+
+public:
+	SteamNetworkingStub();
+
+	long long getPacketsSent() const;
+	long long getBytesSent() const;
+
+	virtual bool SendP2PPacket(CSteamID steamIDRemote, const void* pubData, uint32 cubData, EP2PSend eP2PSendType, int nChannel);
+	virtual bool IsP2PPacketAvailable(uint32* pcubMsgSize, int nChannel);
+	virtual bool ReadP2PPacket(void* pubDest, uint32 cubDest, uint32* pcubMsgSize, CSteamID* psteamIDRemote, int nChannel);
+	virtual bool AcceptP2PSessionWithUser(CSteamID steamIDRemote);
+	virtual bool CloseP2PSessionWithUser(CSteamID steamIDRemote);
+	virtual bool CloseP2PChannelWithUser(CSteamID steamIDRemote, int nChannel);
+	virtual bool GetP2PSessionState(CSteamID steamIDRemote, P2PSessionState_t* pConnectionState);
+	virtual bool AllowP2PPacketRelay(bool bAllow);
+
+	virtual SNetListenSocket_t CreateListenSocket(int nVirtualP2PPort, uint32 nIP, uint16 nPort, bool bAllowUseOfPacketRelay);
+	virtual SNetSocket_t CreateP2PConnectionSocket(CSteamID steamIDTarget, int nVirtualPort, int nTimeoutSec, bool bAllowUseOfPacketRelay);
+	virtual SNetSocket_t CreateConnectionSocket(uint32 nIP, uint16 nPort, int nTimeoutSec);
+	virtual bool DestroySocket(SNetSocket_t hSocket, bool bNotifyRemoteEnd);
+	virtual bool DestroyListenSocket(SNetListenSocket_t hSocket, bool bNotifyRemoteEnd);
+	virtual bool SendDataOnSocket(SNetSocket_t hSocket, void* pubData, uint32 cubData, bool bReliable);
+	virtual bool IsDataAvailableOnSocket(SNetSocket_t hSocket, uint32* pcubMsgSize);
+	virtual bool RetrieveDataFromSocket(SNetSocket_t hSocket, void* pubDest, uint32 cubDest, uint32* pcubMsgSize);
+	virtual bool IsDataAvailable(SNetListenSocket_t hListenSocket, uint32* pcubMsgSize, SNetSocket_t* phSocket);
+	virtual bool RetrieveData(SNetListenSocket_t hListenSocket, void* pubDest, uint32 cubDest, uint32* pcubMsgSize, SNetSocket_t* phSocket);
+	virtual bool GetSocketInfo(SNetSocket_t hSocket, CSteamID* pSteamIDRemote, int* peSocketStatus, uint32* punIPRemote, uint16* punPortRemote);
+	virtual bool GetListenSocketInfo(SNetListenSocket_t hListenSocket, uint32* pnIP, uint16* pnPort);
+	virtual ESNetSocketConnectionType GetSocketConnectionType(SNetSocket_t hSocket);
+	virtual int GetMaxPacketSize(SNetSocket_t hSocket);
+
+private:
+	long long m_packetsSent;
+	long long m_bytesSent;
+};
@@ -2,10 +2,91 @@ package com.codedisaster.steamworks;
 
 import java.nio.ByteBuffer;
 
+/**
+ * Wrapper for the encrypted app ticket library. This class holds no state, and the native functions only
+ * operate on the buffers passed to them. Valve doesn't document the thread safety of the native library,
+ * see {@link SteamEncryptedAppTicketBatch} for how to check it before calling it from multiple threads.
+ */
 public class SteamEncryptedAppTicket extends SteamInterface {
 
 	public static final int SymmetricKeyLen = 32;
 
+	/**
+	 * Fields of a decrypted ticket, filled by
+	 * {@link SteamEncryptedAppTicket#decryptAndInspect(ByteBuffer, ByteBuffer, byte[], int, TicketInfo)}.
+	 * Instances are meant to be reused.
+	 */
+	public static class TicketInfo {
+
+		static final int DecryptedSize = 0;
+		static final int AppID = 1;
+		static final int IssueTime = 2;
+		static final int Flags = 3;
+		static final int UserDataSize = 4;
+
+		static final int FlagIsForApp = 1;
+		static final int FlagOwnsApp = 2;
+		static final int FlagVacBanned = 4;
+
+		final int[] fields = new int[5];
+		final long[] steamID = new long[1];
+		boolean decrypted;
+
+		/**
+		 * Returns false if the ticket couldn't be decrypted, in which case all other values are undefined.
+		 */
+		public boolean isDecrypted() {
+			return decrypted;
+		}
+
+		public int getDecryptedSize() {
+			return fields[DecryptedSize];
+		}
+
+		public int getAppID() {
+			return fields[AppID];
+		}
+
+		public int getIssueTime() {
+			return fields[IssueTime];
+		}
+
+		/**
+		 * Returns the user's ID as a native handle, see {@link SteamID#createFromNativeHandle(long)}.
+		 */
+		public long getSteamIDHandle() {
+			return steamID[0];
+		}
+
+		/**
+		 * Returns if the ticket is for the app ID passed to decryptAndInspect().
+		 */
+		public boolean isForApp() {
+			return (fields[Flags] & FlagIsForApp) != 0;
+		}
+
+		/**
+		 * Returns if the user owns the app ID passed to decryptAndInspect().
+		 */
+		public boolean userOwnsApp() {
+			return (fields[Flags] & FlagOwnsApp) != 0;
+		}
+
+		public boolean isVacBanned() {
+			return (fields[Flags] & FlagVacBanned) != 0;
+		}
+
+		public int getUserVariableDataSize() {
+			return fields[UserDataSize];
+		}
+
+		void set(TicketInfo other) {
+			System.arraycopy(other.fields, 0, fields, 0, fields.length);
+			steamID[0] = other.steamID[0];
+			decrypted = other.decrypted;
+		}
+	}
+
 	public static void loadLibraries() throws SteamException {
 		loadLibraries(null);
 	}
@@ -39,6 +120,27 @@ public class SteamEncryptedAppTicket extends SteamInterface {
 				key, SymmetricKeyLen, ticketDecryptedOutputSize);
 	}
 
+	/**
+	 * Decrypts a ticket, and reads all its fields, with one native call.
+	 *
+	 * The decrypted ticket is written to <code>ticketDecrypted</code>, starting at its position. The buffer
+	 * state isn't changed. Returns false if the ticket couldn't be decrypted.
+	 */
+	public boolean decryptAndInspect(ByteBuffer ticketEncrypted, ByteBuffer ticketDecrypted,
+									 byte[] key, int appID, TicketInfo info) throws SteamException {
+
+		checkBuffer(ticketEncrypted);
+		checkBuffer(ticketDecrypted);
+		checkArray(key, SymmetricKeyLen);
+
+		info.decrypted = SteamEncryptedAppTicketNative.decryptAndInspect(
+				ticketEncrypted, ticketEncrypted.position(), ticketEncrypted.remaining(),
+				ticketDecrypted, ticketDecrypted.position(), ticketDecrypted.remaining(),
+				key, SymmetricKeyLen, appID, info.fields, info.steamID);
+
+		return info.decrypted;
+	}
+
 	public boolean isTicketForApp(ByteBuffer ticketDecrypted, int appID) throws SteamException {
 
 		checkBuffer(ticketDecrypted);
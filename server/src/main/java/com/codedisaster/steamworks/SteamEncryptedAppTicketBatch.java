@@ -0,0 +1,132 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Decrypts many encrypted app tickets in parallel, with an {@link ExecutorService}.
+ * <p>
+ * Tickets are split into one chunk per worker. Each worker thread uses its own direct buffers, allocated
+ * once per thread, so tickets can be passed in heap buffers too. The decrypted tickets stay in these
+ * buffers, only the fields of {@link SteamEncryptedAppTicket.TicketInfo} are returned.
+ * <p>
+ * A batch instance can be shared by multiple threads. The Java side keeps no shared state, but Valve
+ * doesn't document the thread safety of the native sdkencryptedappticket library. The <code>stress</code>
+ * command of the test application <code>SteamEncryptedAppTicketTest</code> decrypts a ticket on many
+ * threads, and compares all results with a single-threaded run. Run it with the library version you ship.
+ */
+public class SteamEncryptedAppTicketBatch {
+
+	/** Size of the per-thread buffers, large enough for any ticket issued by Steam. */
+	public static final int MaxTicketSize = 4096;
+
+	private static class ThreadBuffers {
+		final ByteBuffer encrypted = ByteBuffer.allocateDirect(MaxTicketSize);
+		final ByteBuffer decrypted = ByteBuffer.allocateDirect(MaxTicketSize);
+	}
+
+	private static final ThreadLocal<ThreadBuffers> threadBuffers = new ThreadLocal<ThreadBuffers>() {
+		@Override
+		protected ThreadBuffers initialValue() {
+			return new ThreadBuffers();
+		}
+	};
+
+	private final SteamEncryptedAppTicket encryptedAppTicket = new SteamEncryptedAppTicket();
+	private final ExecutorService executor;
+	private final int parallelism;
+
+	/**
+	 * @param parallelism maximum number of chunks submitted per batch, usually the executor's thread count
+	 */
+	public SteamEncryptedAppTicketBatch(ExecutorService executor, int parallelism) {
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Decrypts the first <code>count</code> tickets, and stores the results at the same index of the result
+	 * array. Each ticket is read from its buffer's position to its limit. Blocks until all tickets are done.
+	 */
+	public void decryptAndInspect(final ByteBuffer[] tickets, int count, final byte[] key, final int appID,
+								  final SteamEncryptedAppTicket.TicketInfo[] results)
+			throws SteamException, InterruptedException {
+
+		if (count > tickets.length || count > results.length) {
+			throw new SteamException("Array too small, " + Math.min(tickets.length, results.length) +
+					" found but " + count + " expected.");
+		}
+
+		encryptedAppTicket.checkArray(key, SteamEncryptedAppTicket.SymmetricKeyLen);
+
+		int numChunks = Math.max(1, Math.min(parallelism, count));
+		int chunkSize = (count + numChunks - 1) / numChunks;
+
+		if (numChunks == 1) {
+			decryptAndInspect(tickets, 0, count, key, appID, results);
+			return;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numChunks);
+		for (int first = 0; first < count; first += chunkSize) {
+			final int from = first;
+			final int to = Math.min(count, first + chunkSize);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					decryptAndInspect(tickets, from, to, key, appID, results);
+					return null;
+				}
+			});
+		}
+
+		for (Future<Void> future : executor.invokeAll(tasks)) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof SteamException) {
+					throw (SteamException) cause;
+				}
+				throw new SteamException(cause.toString());
+			}
+		}
+	}
+
+	/**
+	 * Decrypts a single ticket on the calling thread, using the thread's direct buffers.
+	 */
+	public boolean decryptAndInspect(ByteBuffer ticket, byte[] key, int appID,
+									 SteamEncryptedAppTicket.TicketInfo result) throws SteamException {
+
+		ThreadBuffers buffers = threadBuffers.get();
+		ByteBuffer encrypted = ticket;
+
+		if (!ticket.isDirect()) {
+			if (ticket.remaining() > MaxTicketSize) {
+				result.decrypted = false;
+				return false;
+			}
+			encrypted = buffers.encrypted;
+			encrypted.clear();
+			encrypted.put(ticket.duplicate());
+			encrypted.flip();
+		}
+
+		buffers.decrypted.clear();
+		return encryptedAppTicket.decryptAndInspect(encrypted, buffers.decrypted, key, appID, result);
+	}
+
+	private void decryptAndInspect(ByteBuffer[] tickets, int from, int to, byte[] key, int appID,
+								   SteamEncryptedAppTicket.TicketInfo[] results) throws SteamException {
+		for (int i = from; i < to; i++) {
+			decryptAndInspect(tickets[i], key, appID, results[i]);
+		}
+	}
+
+}
@@ -0,0 +1,229 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Caches the results of {@link SteamEncryptedAppTicket#decryptAndInspect}, for clients presenting the same
+ * encrypted ticket multiple times.
+ * <p>
+ * Entries are looked up by a 64-bit hash of the encrypted ticket, and compared byte by byte with the cached
+ * copy of the ticket, so a hash collision can never return the result of another ticket. The cache holds up
+ * to <code>capacity</code> entries, and evicts the least recently used one when full. An entry expires
+ * <code>maxTicketAge</code> seconds after the ticket's issue time, and is never returned after that.
+ * <p>
+ * Only successfully decrypted tickets are cached. An instance must only be used with one decryption key.
+ * All functions are thread safe. Tickets are decrypted outside of the cache lock.
+ */
+public class SteamEncryptedAppTicketCache {
+
+	private static class Entry {
+		final long hash;
+		final byte[] ticket;
+		final int appID;
+		final long expiry;
+		final SteamEncryptedAppTicket.TicketInfo info = new SteamEncryptedAppTicket.TicketInfo();
+
+		Entry prev;
+		Entry next;
+
+		Entry(long hash, byte[] ticket, int appID, long expiry) {
+			this.hash = hash;
+			this.ticket = ticket;
+			this.appID = appID;
+			this.expiry = expiry;
+		}
+	}
+
+	private final SteamEncryptedAppTicketBatch decoder;
+	private final int capacity;
+	private final long maxTicketAge;
+
+	private final SteamLongMap<Entry> entries;
+	private Entry head;
+	private Entry tail;
+
+	private long hits;
+	private long misses;
+	private long expirations;
+	private long evictions;
+
+	/**
+	 * @param maxTicketAge number of seconds after its issue time a ticket is accepted from the cache
+	 */
+	public SteamEncryptedAppTicketCache(SteamEncryptedAppTicketBatch decoder, int capacity, int maxTicketAge) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		this.decoder = decoder;
+		this.capacity = capacity;
+		this.maxTicketAge = maxTicketAge;
+		this.entries = new SteamLongMap<Entry>(capacity);
+	}
+
+	/**
+	 * Looks up a ticket, or decrypts and caches it. The ticket is read from <code>ticketEncrypted.position()</code>
+	 * to <code>ticketEncrypted.limit()</code>. The buffer state isn't changed.
+	 *
+	 * Returns false if the ticket couldn't be decrypted.
+	 */
+	public boolean decryptAndInspect(ByteBuffer ticketEncrypted, byte[] key, int appID,
+									 SteamEncryptedAppTicket.TicketInfo info) throws SteamException {
+
+		long hash = hash(ticketEncrypted);
+		long now = System.currentTimeMillis() / 1000;
+
+		synchronized (this) {
+			Entry entry = entries.get(hash);
+
+			if (entry != null) {
+				if (now >= entry.expiry) {
+					remove(entry);
+					expirations++;
+				} else if (entry.appID == appID && matches(entry.ticket, ticketEncrypted)) {
+					moveToFront(entry);
+					info.set(entry.info);
+					hits++;
+					return true;
+				}
+			}
+
+			misses++;
+		}
+
+		if (!decoder.decryptAndInspect(ticketEncrypted, key, appID, info)) {
+			return false;
+		}
+
+		long expiry = (info.getIssueTime() & 0xffffffffL) + maxTicketAge;
+		if (now >= expiry) {
+			return true;
+		}
+
+		byte[] ticket = new byte[ticketEncrypted.remaining()];
+		ticketEncrypted.duplicate().get(ticket);
+
+		Entry entry = new Entry(hash, ticket, appID, expiry);
+		entry.info.set(info);
+
+		synchronized (this) {
+			Entry existing = entries.get(hash);
+			if (existing != null) {
+				remove(existing);
+			} else if (entries.size() >= capacity) {
+				remove(tail);
+				evictions++;
+			}
+
+			entries.put(hash, entry);
+			addToFront(entry);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Removes all expired entries.
+	 */
+	public synchronized void removeExpired() {
+		long now = System.currentTimeMillis() / 1000;
+
+		Entry entry = tail;
+		while (entry != null) {
+			Entry prev = entry.prev;
+			if (now >= entry.expiry) {
+				remove(entry);
+				expirations++;
+			}
+			entry = prev;
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		head = tail = null;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getExpirations() {
+		return expirations;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	private void remove(Entry entry) {
+		entries.remove(entry.hash);
+		unlink(entry);
+	}
+
+	private void unlink(Entry entry) {
+		if (entry.prev != null) {
+			entry.prev.next = entry.next;
+		} else {
+			head = entry.next;
+		}
+
+		if (entry.next != null) {
+			entry.next.prev = entry.prev;
+		} else {
+			tail = entry.prev;
+		}
+
+		entry.prev = entry.next = null;
+	}
+
+	private void addToFront(Entry entry) {
+		entry.prev = null;
+		entry.next = head;
+		if (head != null) {
+			head.prev = entry;
+		}
+		head = entry;
+		if (tail == null) {
+			tail = entry;
+		}
+	}
+
+	private void moveToFront(Entry entry) {
+		if (entry != head) {
+			unlink(entry);
+			addToFront(entry);
+		}
+	}
+
+	private static boolean matches(byte[] ticket, ByteBuffer data) {
+		int position = data.position();
+		if (ticket.length != data.remaining()) {
+			return false;
+		}
+		for (int i = 0; i < ticket.length; i++) {
+			if (ticket[i] != data.get(position + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long hash(ByteBuffer data) {
+		// FNV-1a
+		long hash = 0xcbf29ce484222325L;
+		for (int i = data.position(); i < data.limit(); i++) {
+			hash ^= data.get(i) & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+}
@@ -20,6 +20,46 @@ class SteamEncryptedAppTicketNative {
 			(uint8*) &ticketDecrypted[decryptedOffset], (uint32*) &decryptedLength[0], (uint8*) key, keyLength);
 	*/
 
+	static native boolean decryptAndInspect(ByteBuffer ticketEncrypted, int encryptedOffset, int encryptedSize,
+											ByteBuffer ticketDecrypted, int decryptedOffset, int decryptedSize,
+											byte[] key, int keyLength, int appID, int[] fields, long[] steamID); /*
+
+		uint8* decrypted = (uint8*) &ticketDecrypted[decryptedOffset];
+		uint32 decryptedLength = decryptedSize;
+
+		if (!SteamEncryptedAppTicket_BDecryptTicket((uint8*) &ticketEncrypted[encryptedOffset], encryptedSize,
+			decrypted, &decryptedLength, (uint8*) key, keyLength)) {
+			return false;
+		}
+
+		CSteamID ticketSteamID;
+		SteamEncryptedAppTicket_GetTicketSteamID(decrypted, decryptedLength, &ticketSteamID);
+
+		uint32 userDataSize = 0;
+		SteamEncryptedAppTicket_GetUserVariableData(decrypted, decryptedLength, &userDataSize);
+
+		jint flags = 0;
+		if (SteamEncryptedAppTicket_BIsTicketForApp(decrypted, decryptedLength, (AppId_t) appID)) {
+			flags |= 1;
+		}
+		if (SteamEncryptedAppTicket_BUserOwnsAppInTicket(decrypted, decryptedLength, (AppId_t) appID)) {
+			flags |= 2;
+		}
+		if (SteamEncryptedAppTicket_BUserIsVacBanned(decrypted, decryptedLength)) {
+			flags |= 4;
+		}
+
+		fields[0] = decryptedLength;
+		fields[1] = SteamEncryptedAppTicket_GetTicketAppID(decrypted, decryptedLength);
+		fields[2] = SteamEncryptedAppTicket_GetTicketIssueTime(decrypted, decryptedLength);
+		fields[3] = flags;
+		fields[4] = userDataSize;
+
+		steamID[0] = (int64) ticketSteamID.ConvertToUint64();
+
+		return true;
+	*/
+
 	static native boolean isTicketForApp(ByteBuffer ticketDecrypted,
 										 int bufferOffset, int bufferSize, int appID); /*
 
@@ -0,0 +1,259 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the fields of a decrypted app ticket directly from its buffer, without native calls or copies.
+ * <p>
+ * Valve doesn't document the layout of decrypted tickets. As far as known, a decrypted ticket starts with the
+ * length of the user variable data, followed by the data, and the app ownership section: a length prefixed
+ * block with version, Steam ID, app ID, IP addresses, ownership flags, issue and expiry time, licenses, and
+ * DLC with their licenses. {@link SteamEncryptedAppTicketView#wrap(ByteBuffer)} reads the ownership section
+ * at the offset given by the user data length, and fails if it doesn't parse to exactly its own length. The
+ * user data is chosen by the client, so the view never searches it for anything looking like an ownership
+ * section. The test application <code>SteamEncryptedAppTicketTest</code> compares the values read by the
+ * view with the native accessors.
+ * <p>
+ * The VAC ban status isn't decoded, use {@link SteamEncryptedAppTicket#userIsVacBanned(ByteBuffer)} or
+ * {@link SteamEncryptedAppTicket.TicketInfo#isVacBanned()} for it.
+ * <p>
+ * Once wrapped, all accessors are plain memory reads, and can be called from any thread, as long as the
+ * buffer isn't modified. Instances are meant to be reused.
+ */
+public class SteamEncryptedAppTicketView {
+
+	/**
+	 * Size of the ownership section without licenses and DLC: length, version, Steam ID, app ID, IPs, flags,
+	 * issue and expiry time, license count, DLC count, and a reserved field.
+	 */
+	private static final int MinOwnershipSize = 46;
+
+	private ByteBuffer buffer;
+	private int base;
+	private int end;
+
+	private int userDataSize;
+
+	private int version;
+	private long steamID;
+	private int appID;
+	private int externalIP;
+	private int internalIP;
+	private int ownershipFlags;
+	private int issueTime;
+	private int expiryTime;
+
+	private int licenseCount;
+	private int licensesOffset;
+
+	private int dlcCount;
+	private int[] dlcOffsets = new int[8];
+
+	/**
+	 * Wraps a decrypted ticket, located between <code>ticketDecrypted.position()</code> and
+	 * <code>ticketDecrypted.limit()</code>. The buffer state isn't changed.
+	 *
+	 * Returns false if the ticket doesn't match the expected layout.
+	 */
+	public boolean wrap(ByteBuffer ticketDecrypted) {
+		buffer = ticketDecrypted;
+		base = ticketDecrypted.position();
+		end = ticketDecrypted.limit();
+
+		if (base + 4 <= end) {
+			// user data length, user data, ownership section
+			long size = getInt(base) & 0xffffffffL;
+			long offset = base + 4 + size;
+
+			if (offset + MinOwnershipSize <= end && parseOwnership((int) offset)) {
+				userDataSize = (int) size;
+				return true;
+			}
+		}
+
+		buffer = null;
+		return false;
+	}
+
+	public boolean isValid() {
+		return buffer != null;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the user's ID as a native handle, see {@link SteamID#createFromNativeHandle(long)}.
+	 */
+	public long getSteamIDHandle() {
+		return steamID;
+	}
+
+	public int getAppID() {
+		return appID;
+	}
+
+	/**
+	 * Returns the external IP address, as stored in the ticket.
+	 */
+	public int getExternalIP() {
+		return externalIP;
+	}
+
+	/**
+	 * Returns the internal IP address, as stored in the ticket.
+	 */
+	public int getInternalIP() {
+		return internalIP;
+	}
+
+	public int getOwnershipFlags() {
+		return ownershipFlags;
+	}
+
+	/**
+	 * Returns the issue time, in seconds since the epoch, as an unsigned value.
+	 */
+	public int getIssueTime() {
+		return issueTime;
+	}
+
+	/**
+	 * Returns the expiry time, in seconds since the epoch, as an unsigned value.
+	 */
+	public int getExpiryTime() {
+		return expiryTime;
+	}
+
+	public int getLicenseCount() {
+		return licenseCount;
+	}
+
+	public int getLicense(int index) {
+		checkIndex(index, licenseCount);
+		return getInt(licensesOffset + index * 4);
+	}
+
+	public int getDLCCount() {
+		return dlcCount;
+	}
+
+	public int getDLCAppID(int index) {
+		checkIndex(index, dlcCount);
+		return getInt(dlcOffsets[index]);
+	}
+
+	/**
+	 * Returns true if the ticket is for this app, or lists it as a DLC.
+	 */
+	public boolean userOwnsApp(int appID) {
+		if (appID == this.appID) {
+			return true;
+		}
+		for (int i = 0; i < dlcCount; i++) {
+			if (getInt(dlcOffsets[i]) == appID) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int getUserVariableDataSize() {
+		return userDataSize;
+	}
+
+	/**
+	 * Returns a view of the user variable data, sharing the ticket's buffer.
+	 */
+	public ByteBuffer getUserVariableData() {
+		ByteBuffer data = buffer.duplicate();
+		data.limit(base + 4 + userDataSize);
+		data.position(base + 4);
+		return data.slice();
+	}
+
+	/**
+	 * Returns the size of the decrypted ticket.
+	 */
+	public int getTicketSize() {
+		return end - base;
+	}
+
+	/**
+	 * Parses an ownership section, and returns true if it ends exactly where its length says.
+	 */
+	private boolean parseOwnership(int offset) {
+		long length = getInt(offset) & 0xffffffffL;
+		if (length < MinOwnershipSize || offset + length > end) {
+			return false;
+		}
+
+		int sectionEnd = (int) (offset + length);
+		int position = offset + 40;
+
+		int numLicenses = getShort(position);
+		int licenses = position + 2;
+		position = licenses + numLicenses * 4;
+
+		if (position + 2 > sectionEnd) {
+			return false;
+		}
+
+		int numDLC = getShort(position);
+		position += 2;
+
+		if (dlcOffsets.length < numDLC) {
+			dlcOffsets = new int[numDLC];
+		}
+
+		for (int i = 0; i < numDLC; i++) {
+			// app ID, license count, licenses
+			if (position + 6 > sectionEnd) {
+				return false;
+			}
+			dlcOffsets[i] = position;
+			position += 6 + getShort(position + 4) * 4;
+		}
+
+		// reserved
+		if (position + 2 != sectionEnd) {
+			return false;
+		}
+
+		version = getInt(offset + 4);
+		steamID = getLong(offset + 8);
+		appID = getInt(offset + 16);
+		externalIP = getInt(offset + 20);
+		internalIP = getInt(offset + 24);
+		ownershipFlags = getInt(offset + 28);
+		issueTime = getInt(offset + 32);
+		expiryTime = getInt(offset + 36);
+
+		licenseCount = numLicenses;
+		licensesOffset = licenses;
+		dlcCount = numDLC;
+
+		return true;
+	}
+
+	private static void checkIndex(int index, int count) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of range, count is " + count + ".");
+		}
+	}
+
+	private int getShort(int index) {
+		return (buffer.get(index) & 0xff) | ((buffer.get(index + 1) & 0xff) << 8);
+	}
+
+	private int getInt(int index) {
+		return (buffer.get(index) & 0xff) | ((buffer.get(index + 1) & 0xff) << 8)
+				| ((buffer.get(index + 2) & 0xff) << 16) | ((buffer.get(index + 3) & 0xff) << 24);
+	}
+
+	private long getLong(int index) {
+		return (getInt(index) & 0xffffffffL) | ((long) getInt(index + 4) << 32);
+	}
+
+}
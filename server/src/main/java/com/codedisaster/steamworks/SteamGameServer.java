@@ -29,24 +29,123 @@ public class SteamGameServer extends SteamInterface {
 		}
 	}
 
+	/**
+	 * Packet index filled by {@link SteamGameServer#drainOutgoingPackets(ByteBuffer, OutgoingPacketBatch)}.
+	 * Instances are meant to be reused for each call.
+	 */
+	public static class OutgoingPacketBatch {
+
+		static final int Stride = 4;
+
+		/** Packed index, with offset, size, IP address and port of each packet. */
+		final int[] index;
+		int count;
+
+		public OutgoingPacketBatch(int capacity) {
+			index = new int[capacity * Stride];
+		}
+
+		public int getCapacity() {
+			return index.length / Stride;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the absolute position of a packet's first byte in the buffer passed to drainOutgoingPackets().
+		 */
+		public int getOffset(int packet) {
+			return index[packet * Stride];
+		}
+
+		public int getSize(int packet) {
+			return index[packet * Stride + 1];
+		}
+
+		/**
+		 * Returns the target IP address, in host order.
+		 */
+		public int getAddress(int packet) {
+			return index[packet * Stride + 2];
+		}
+
+		/**
+		 * Returns the target port, in host order, as an unsigned value.
+		 */
+		public int getPort(int packet) {
+			return index[packet * Stride + 3];
+		}
+
+		public void clear() {
+			count = 0;
+		}
+
+		/**
+		 * Appends a packet to the index. Only needed by custom implementations of
+		 * {@link SteamGameServerSocketShare.GameServer}.
+		 */
+		public int add(int offset, int size, int address, int port) {
+			if (count == getCapacity()) {
+				throw new IndexOutOfBoundsException("OutgoingPacketBatch is full, capacity: " + getCapacity());
+			}
+			int i = count * Stride;
+			index[i] = offset;
+			index[i + 1] = size;
+			index[i + 2] = address;
+			index[i + 3] = port;
+			return count++;
+		}
+	}
+
+	/**
+	 * Minimum free buffer space required by
+	 * {@link SteamGameServer#drainOutgoingPackets(ByteBuffer, OutgoingPacketBatch)} to fetch the next packet.
+	 */
+	public static final int MaxOutgoingPacketSize = 2048;
+
+	private SteamGameServerQueryResponder queryResponder;
+
 	public SteamGameServer(SteamGameServerCallback callback) {
 		super(SteamGameServerAPINative.getSteamGameServerPointer(),
 				SteamGameServerNative.createCallback(new SteamGameServerCallbackAdapter(callback)));
 	}
 
+	/**
+	 * Attaches a query responder, which receives all values passed to the server info setters of this
+	 * interface from now on. Pass <code>null</code> to detach.
+	 */
+	public void setQueryResponder(SteamGameServerQueryResponder queryResponder) {
+		this.queryResponder = queryResponder;
+	}
+
+	SteamGameServerQueryResponder getQueryResponder() {
+		return queryResponder;
+	}
+
 	public void setProduct(String product) {
 		SteamGameServerNative.setProduct(pointer, product);
 	}
 
 	public void setGameDescription(String gameDescription) {
+		if (queryResponder != null) {
+			queryResponder.setGameDescription(gameDescription);
+		}
 		SteamGameServerNative.setGameDescription(pointer, gameDescription);
 	}
 
 	public void setModDir(String modDir) {
+		if (queryResponder != null) {
+			queryResponder.setModDir(modDir);
+		}
 		SteamGameServerNative.setModDir(pointer, modDir);
 	}
 
 	public void setDedicatedServer(boolean dedicated) {
+		if (queryResponder != null) {
+			queryResponder.setDedicatedServer(dedicated);
+		}
 		SteamGameServerNative.setDedicatedServer(pointer, dedicated);
 	}
 
@@ -79,22 +178,37 @@ public class SteamGameServer extends SteamInterface {
 	}
 
 	public void setMaxPlayerCount(int playersMax) {
+		if (queryResponder != null) {
+			queryResponder.setMaxPlayerCount(playersMax);
+		}
 		SteamGameServerNative.setMaxPlayerCount(pointer, playersMax);
 	}
 
 	public void setBotPlayerCount(int botplayers) {
+		if (queryResponder != null) {
+			queryResponder.setBotPlayerCount(botplayers);
+		}
 		SteamGameServerNative.setBotPlayerCount(pointer, botplayers);
 	}
 
 	public void setServerName(String serverName) {
+		if (queryResponder != null) {
+			queryResponder.setServerName(serverName);
+		}
 		SteamGameServerNative.setServerName(pointer, serverName);
 	}
 
 	public void setMapName(String mapName) {
+		if (queryResponder != null) {
+			queryResponder.setMapName(mapName);
+		}
 		SteamGameServerNative.setMapName(pointer, mapName);
 	}
 
 	public void setPasswordProtected(boolean passwordProtected) {
+		if (queryResponder != null) {
+			queryResponder.setPasswordProtected(passwordProtected);
+		}
 		SteamGameServerNative.setPasswordProtected(pointer, passwordProtected);
 	}
 
@@ -107,14 +221,23 @@ public class SteamGameServer extends SteamInterface {
 	}
 
 	public void clearAllKeyValues() {
+		if (queryResponder != null) {
+			queryResponder.clearAllKeyValues();
+		}
 		SteamGameServerNative.clearAllKeyValues(pointer);
 	}
 
 	public void setKeyValue(String key, String value) {
+		if (queryResponder != null) {
+			queryResponder.setKeyValue(key, value);
+		}
 		SteamGameServerNative.setKeyValue(pointer, key, value);
 	}
 
 	public void setGameTags(String gameTags) {
+		if (queryResponder != null) {
+			queryResponder.setGameTags(gameTags);
+		}
 		SteamGameServerNative.setGameTags(pointer, gameTags);
 	}
 
@@ -146,10 +269,16 @@ public class SteamGameServer extends SteamInterface {
 	}
 
 	public void sendUserDisconnect(SteamID steamIDUser) {
+		if (queryResponder != null) {
+			queryResponder.removeUser(steamIDUser.handle);
+		}
 		SteamGameServerNative.sendUserDisconnect(pointer, steamIDUser.handle);
 	}
 
 	public boolean updateUserData(SteamID steamIDUser, String playerName, int score) {
+		if (queryResponder != null) {
+			queryResponder.updateUserData(steamIDUser.handle, playerName, score);
+		}
 		return SteamGameServerNative.updateUserData(pointer, steamIDUser.handle, playerName, score);
 	}
 
@@ -214,6 +343,28 @@ public class SteamGameServer extends SteamInterface {
 				pointer, out, out.position(), out.remaining(), netAdr, port);
 	}
 
+	/**
+	 * Fetches all outgoing packets into a direct {@link ByteBuffer} with one native call.
+	 *
+	 * Packets are stored back to back, starting at <code>out.position()</code>. Position, size and target
+	 * address of each packet are written to the batch index. Fetching stops if the batch is full, or if
+	 * less than {@link SteamGameServer#MaxOutgoingPacketSize} bytes are left in the buffer. The buffer
+	 * state isn't changed.
+	 *
+	 * Returns the number of packets fetched.
+	 */
+	public int drainOutgoingPackets(ByteBuffer out, OutgoingPacketBatch batch) throws SteamException {
+
+		if (!out.isDirect()) {
+			throw new SteamException("Direct buffer required!");
+		}
+
+		batch.count = SteamGameServerNative.drainOutgoingPackets(pointer, out, out.position(), out.remaining(),
+				MaxOutgoingPacketSize, batch.getCapacity(), batch.index);
+
+		return batch.count;
+	}
+
 	public void enableHeartbeats(boolean active) {
 		SteamGameServerNative.enableHeartbeats(pointer, active);
 	}
@@ -59,4 +59,18 @@ public class SteamGameServerAPI {
 		return new SteamID(SteamGameServerAPINative.nativeGetSteamID());
 	}
 
+	/**
+	 * Game server version of {@link SteamAPI#setKeepCallbackThreadsAttached(boolean)}.
+	 */
+	public static void setKeepCallbackThreadsAttached(boolean keepAttached) {
+		SteamGameServerAPINative.setKeepCallbackThreadsAttached(keepAttached);
+	}
+
+	/**
+	 * Game server version of {@link SteamAPI#getCallbackThreadAttachCount()}.
+	 */
+	public static long getCallbackThreadAttachCount() {
+		return SteamGameServerAPINative.getCallbackThreadAttachCount();
+	}
+
 }
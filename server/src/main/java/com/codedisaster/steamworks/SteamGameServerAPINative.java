@@ -6,6 +6,7 @@ class SteamGameServerAPINative {
 
 	/*JNI
 		 #include <steam_gameserver.h>
+		 #include "SteamGameServerCallbackAdapter.h"
 		 static JavaVM* staticVM = 0;
 	*/
 
@@ -36,6 +37,14 @@ class SteamGameServerAPINative {
 		return SteamGameServer_GetSteamID();
 	*/
 
+	static native void setKeepCallbackThreadsAttached(boolean keepAttached); /*
+		SteamGameServerCallbackAdapter::setKeepThreadsAttached(keepAttached);
+	*/
+
+	static native long getCallbackThreadAttachCount(); /*
+		return SteamGameServerCallbackAdapter::getThreadAttachCount();
+	*/
+
 	static native long getSteamGameServerPointer(); /*
 		return (intp) SteamGameServer();
 	*/
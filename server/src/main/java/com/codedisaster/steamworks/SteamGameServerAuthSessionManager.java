@@ -0,0 +1,332 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manages auth sessions of a {@link SteamGameServer}, with a {@link SteamFuture} per validation.
+ * <p>
+ * {@link SteamGameServerAuthSessionManager#beginAuthSession(long, ByteBuffer)} can be called from any
+ * thread. Tickets are copied into pooled direct buffers, which are passed to Steam, and kept until the session
+ * ends. A ticket presented again for the same user, while its session is active, returns the existing future
+ * instead of starting a new session. Tickets are compared byte by byte for this. A different ticket replaces
+ * the user's session.
+ * <p>
+ * Steam can report a validated session as invalid later on, e.g. if the ticket is cancelled, or the user
+ * gets banned. Such sessions are ended, and reported to the {@link Listener}.
+ * <p>
+ * Forward {@link SteamGameServerCallback#onValidateAuthTicketResponse(SteamID, SteamAuth.AuthSessionResponse, SteamID)}
+ * to {@link SteamGameServerAuthSessionManager#onValidateAuthTicketResponse(SteamID, SteamAuth.AuthSessionResponse, SteamID)},
+ * and call {@link SteamGameServerAuthSessionManager#update()} regularly to time out validations. Futures are
+ * completed by the thread calling these functions, usually the one running Steam callbacks.
+ */
+public class SteamGameServerAuthSessionManager {
+
+	public interface Listener {
+
+		/**
+		 * Called for a session which has been validated before, and is now reported with a response other than
+		 * {@link SteamAuth.AuthSessionResponse#OK}. The session has been ended already.
+		 */
+		void onAuthSessionInvalidated(long steamID, SteamAuth.AuthSessionResponse response, long ownerSteamID);
+
+	}
+
+	public static class AuthSessionResult {
+
+		private final long steamID;
+		private final SteamAuth.BeginAuthSessionResult beginResult;
+		private final SteamAuth.AuthSessionResponse response;
+		private final long ownerSteamID;
+		private final boolean timedOut;
+
+		AuthSessionResult(long steamID, SteamAuth.BeginAuthSessionResult beginResult,
+						  SteamAuth.AuthSessionResponse response, long ownerSteamID, boolean timedOut) {
+			this.steamID = steamID;
+			this.beginResult = beginResult;
+			this.response = response;
+			this.ownerSteamID = ownerSteamID;
+			this.timedOut = timedOut;
+		}
+
+		/**
+		 * Returns true if the ticket has been validated with {@link SteamAuth.AuthSessionResponse#OK}.
+		 */
+		public boolean isOK() {
+			return response == SteamAuth.AuthSessionResponse.OK;
+		}
+
+		public long getSteamID() {
+			return steamID;
+		}
+
+		public SteamAuth.BeginAuthSessionResult getBeginResult() {
+			return beginResult;
+		}
+
+		/**
+		 * Returns the validation response, or <code>null</code> if the session couldn't be started, or
+		 * timed out.
+		 */
+		public SteamAuth.AuthSessionResponse getResponse() {
+			return response;
+		}
+
+		public long getOwnerSteamID() {
+			return ownerSteamID;
+		}
+
+		public boolean isTimedOut() {
+			return timedOut;
+		}
+	}
+
+	private static class Session {
+		final long steamID;
+		final ByteBuffer ticket;
+		final SteamFuture<AuthSessionResult> future = new SteamFuture<AuthSessionResult>();
+		long deadline;
+		boolean validated;
+
+		Session(long steamID, ByteBuffer ticket) {
+			this.steamID = steamID;
+			this.ticket = ticket;
+		}
+	}
+
+	private final SteamGameServer server;
+	private final long timeoutNanos;
+	private Listener listener;
+
+	private final SteamLongMap<Session> sessions = new SteamLongMap<Session>(256);
+	private final SteamBufferPool ticketPool = new SteamBufferPool(32);
+
+	private final List<Session> expired = new ArrayList<Session>();
+	private long[] expiredIDs = new long[16];
+
+	private int numPending;
+	private long numBegun;
+	private long numDeduplicated;
+	private long numTimedOut;
+	private long numInvalidated;
+
+	/**
+	 * @param timeoutMillis time to wait for {@link SteamGameServerCallback#onValidateAuthTicketResponse}
+	 */
+	public SteamGameServerAuthSessionManager(SteamGameServer server, long timeoutMillis) {
+		this.server = server;
+		this.timeoutNanos = timeoutMillis * 1000000L;
+	}
+
+	public synchronized void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	public SteamFuture<AuthSessionResult> beginAuthSession(SteamID steamID, ByteBuffer authTicket) {
+		return beginAuthSession(steamID.handle, authTicket);
+	}
+
+	/**
+	 * Begins an auth session, with a user addressed by a native handle as returned by
+	 * {@link SteamNativeHandle#getNativeHandle(SteamNativeHandle)}. The ticket is read from
+	 * <code>authTicket.position()</code> to <code>authTicket.limit()</code>. The buffer state isn't changed.
+	 */
+	public SteamFuture<AuthSessionResult> beginAuthSession(long steamID, ByteBuffer authTicket) {
+		int size = authTicket.remaining();
+
+		Session replaced = null;
+		Session session;
+
+		synchronized (this) {
+			session = sessions.get(steamID);
+
+			if (session != null) {
+				// compares the remaining bytes of both buffers, without changing their state
+				if (session.ticket.equals(authTicket)) {
+					numDeduplicated++;
+					return session.future;
+				}
+				replaced = removeSession(steamID);
+			}
+
+			ByteBuffer ticket = ticketPool.obtain(size);
+			ticket.put(authTicket.duplicate());
+			ticket.flip();
+
+			int result = SteamGameServerNative.beginAuthSession(server.pointer, ticket, 0, size, steamID);
+
+			numBegun++;
+
+			session = new Session(steamID, ticket);
+
+			SteamAuth.BeginAuthSessionResult beginResult = SteamAuth.BeginAuthSessionResult.byOrdinal(result);
+
+			if (beginResult == SteamAuth.BeginAuthSessionResult.OK) {
+				session.deadline = System.nanoTime() + timeoutNanos;
+				sessions.put(steamID, session);
+				numPending++;
+			} else {
+				ticketPool.free(ticket);
+				session.future.complete(new AuthSessionResult(steamID, beginResult, null, 0, false));
+			}
+		}
+
+		if (replaced != null) {
+			replaced.future.cancel(false);
+		}
+
+		return session.future;
+	}
+
+	/**
+	 * Ends a user's auth session. Pending validations are cancelled.
+	 */
+	public void endAuthSession(long steamID) {
+		Session session;
+		synchronized (this) {
+			session = removeSession(steamID);
+		}
+		if (session != null) {
+			session.future.cancel(false);
+		}
+	}
+
+	/**
+	 * Completes a pending validation, or ends a validated session which Steam reports as no longer valid.
+	 * To be called from the server callback.
+	 */
+	public void onValidateAuthTicketResponse(SteamID steamID,
+											 SteamAuth.AuthSessionResponse authSessionResponse,
+											 SteamID ownerSteamID) {
+		Session session;
+		Listener invalidated = null;
+		boolean first;
+		boolean ok = authSessionResponse == SteamAuth.AuthSessionResponse.OK;
+
+		synchronized (this) {
+			session = sessions.get(steamID.handle);
+			if (session == null) {
+				return;
+			}
+
+			first = !session.validated;
+
+			if (first) {
+				if (ok) {
+					session.validated = true;
+					numPending--;
+				} else {
+					// the ticket has been rejected, there's no session to keep
+					removeSession(steamID.handle);
+				}
+			} else {
+				if (ok) {
+					return;
+				}
+				removeSession(steamID.handle);
+				numInvalidated++;
+				invalidated = listener;
+			}
+		}
+
+		if (!first) {
+			if (invalidated != null) {
+				invalidated.onAuthSessionInvalidated(steamID.handle, authSessionResponse, ownerSteamID.handle);
+			}
+			return;
+		}
+
+		session.future.complete(new AuthSessionResult(steamID.handle, SteamAuth.BeginAuthSessionResult.OK,
+				authSessionResponse, ownerSteamID.handle, false));
+	}
+
+	/**
+	 * Ends sessions which haven't been validated in time, and completes their futures.
+	 */
+	public void update() {
+		long now = System.nanoTime();
+
+		synchronized (this) {
+			if (numPending == 0) {
+				return;
+			}
+
+			int count = 0;
+			for (int slot = 0; slot < sessions.capacity(); slot++) {
+				Session session = sessions.valueAt(slot);
+				if (session != null && !session.validated && now - session.deadline >= 0) {
+					if (count == expiredIDs.length) {
+						long[] grown = new long[count * 2];
+						System.arraycopy(expiredIDs, 0, grown, 0, count);
+						expiredIDs = grown;
+					}
+					expiredIDs[count++] = session.steamID;
+				}
+			}
+
+			for (int i = 0; i < count; i++) {
+				expired.add(removeSession(expiredIDs[i]));
+			}
+
+			numTimedOut += count;
+		}
+
+		for (int i = 0; i < expired.size(); i++) {
+			Session session = expired.get(i);
+			session.future.complete(new AuthSessionResult(session.steamID,
+					SteamAuth.BeginAuthSessionResult.OK, null, 0, true));
+		}
+
+		expired.clear();
+	}
+
+	/**
+	 * Returns the number of sessions waiting for validation.
+	 */
+	public synchronized int getNumPending() {
+		return numPending;
+	}
+
+	/**
+	 * Returns the number of active sessions, including those waiting for validation.
+	 */
+	public synchronized int getNumSessions() {
+		return sessions.size();
+	}
+
+	public synchronized long getNumBegun() {
+		return numBegun;
+	}
+
+	/**
+	 * Returns the number of tickets presented again for an active session.
+	 */
+	public synchronized long getNumDeduplicated() {
+		return numDeduplicated;
+	}
+
+	public synchronized long getNumTimedOut() {
+		return numTimedOut;
+	}
+
+	/**
+	 * Returns the number of validated sessions which have been ended because Steam reported them invalid.
+	 */
+	public synchronized long getNumInvalidated() {
+		return numInvalidated;
+	}
+
+	private Session removeSession(long steamID) {
+		Session session = sessions.remove(steamID);
+		if (session != null) {
+			if (!session.validated) {
+				numPending--;
+			}
+			SteamGameServerNative.endAuthSession(server.pointer, steamID);
+			ticketPool.free(session.ticket);
+		}
+		return session;
+	}
+
+}
@@ -0,0 +1,407 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects server info updates, and pushes the ones which changed to {@link SteamGameServer} with one
+ * native call.
+ * <p>
+ * The batch remembers the values pushed last. Setting a field to its current value does nothing, and
+ * setting a field multiple times between two calls to {@link SteamGameServerInfoBatch#flush(SteamGameServer)}
+ * only pushes the last value.
+ * <p>
+ * Values set directly with {@link SteamGameServer} functions bypass this cache. Call
+ * {@link SteamGameServerInfoBatch#invalidate()} to push all values again with the next flush.
+ */
+public class SteamGameServerInfoBatch {
+
+	static final int ServerName = 0;
+	static final int MapName = 1;
+	static final int GameTags = 2;
+	static final int GameData = 3;
+	static final int Region = 4;
+	static final int MaxPlayerCount = 5;
+	static final int BotPlayerCount = 6;
+	static final int PasswordProtected = 7;
+	static final int ClearAllKeyValues = 8;
+	static final int KeyValue = 9;
+	static final int UserData = 10;
+
+	private static final int NumStringFields = 5;
+	private static final int NumFields = 8;
+
+	static final int OpStride = 4;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static class User {
+		String pushedName;
+		int pushedScore;
+		boolean pushed;
+
+		String pendingName;
+		int pendingScore;
+		boolean dirty;
+	}
+
+	private final String[] pushedStrings = new String[NumStringFields];
+	private final String[] pendingStrings = new String[NumStringFields];
+	private final int[] pushedInts = new int[NumFields];
+	private final int[] pendingInts = new int[NumFields];
+	private final boolean[] pushed = new boolean[NumFields];
+	private int dirtyFields;
+
+	private final Map<String, String> pushedKeyValues = new HashMap<String, String>();
+	private final Map<String, String> pendingKeyValues = new LinkedHashMap<String, String>();
+	private boolean clearKeyValues;
+
+	private final SteamLongMap<User> users = new SteamLongMap<User>();
+	private long[] dirtyUsers = new long[16];
+	private int numDirtyUsers;
+
+	private int[] ops = new int[32 * OpStride];
+	private long[] steamIDs = new long[32];
+	private ByteBuffer strings = ByteBuffer.allocateDirect(1024);
+
+	private long numPushed;
+	private long numSuppressed;
+	private long numFailedUserUpdates;
+
+	public void setServerName(String serverName) {
+		setString(ServerName, serverName);
+	}
+
+	public void setMapName(String mapName) {
+		setString(MapName, mapName);
+	}
+
+	public void setGameTags(String gameTags) {
+		setString(GameTags, gameTags);
+	}
+
+	public void setGameData(String gameData) {
+		setString(GameData, gameData);
+	}
+
+	public void setRegion(String region) {
+		setString(Region, region);
+	}
+
+	public void setMaxPlayerCount(int playersMax) {
+		setInt(MaxPlayerCount, playersMax);
+	}
+
+	public void setBotPlayerCount(int botPlayers) {
+		setInt(BotPlayerCount, botPlayers);
+	}
+
+	public void setPasswordProtected(boolean passwordProtected) {
+		setInt(PasswordProtected, passwordProtected ? 1 : 0);
+	}
+
+	public void setKeyValue(String key, String value) {
+		value = nonNull(value);
+
+		if (!clearKeyValues && value.equals(pushedKeyValues.get(key))) {
+			pendingKeyValues.remove(key);
+			numSuppressed++;
+		} else if (pendingKeyValues.put(key, value) != null) {
+			numSuppressed++;
+		}
+	}
+
+	public void clearAllKeyValues() {
+		numSuppressed += pendingKeyValues.size();
+		if (clearKeyValues) {
+			numSuppressed++;
+		}
+		clearKeyValues = true;
+		pendingKeyValues.clear();
+	}
+
+	public void updateUserData(SteamID steamIDUser, String playerName, int score) {
+		updateUserData(steamIDUser.handle, playerName, score);
+	}
+
+	/**
+	 * Updates user data, addressed by a native handle as returned by
+	 * {@link SteamNativeHandle#getNativeHandle(SteamNativeHandle)}.
+	 */
+	public void updateUserData(long steamIDUser, String playerName, int score) {
+		playerName = nonNull(playerName);
+
+		User user = users.get(steamIDUser);
+		if (user == null) {
+			user = new User();
+			users.put(steamIDUser, user);
+		}
+
+		if (user.pushed && user.pushedScore == score && user.pushedName.equals(playerName)) {
+			// reverts a pending change, if any
+			user.pendingName = null;
+			user.dirty = false;
+			numSuppressed++;
+			return;
+		}
+
+		user.pendingName = playerName;
+		user.pendingScore = score;
+
+		if (user.dirty) {
+			numSuppressed++;
+		} else {
+			user.dirty = true;
+			if (numDirtyUsers == dirtyUsers.length) {
+				long[] grown = new long[numDirtyUsers * 2];
+				System.arraycopy(dirtyUsers, 0, grown, 0, numDirtyUsers);
+				dirtyUsers = grown;
+			}
+			dirtyUsers[numDirtyUsers++] = steamIDUser;
+		}
+	}
+
+	/**
+	 * Forgets about a user, e.g. after {@link SteamGameServer#sendUserDisconnect(SteamID)}.
+	 */
+	public void removeUser(long steamIDUser) {
+		User user = users.remove(steamIDUser);
+		if (user != null) {
+			user.dirty = false;
+		}
+	}
+
+	/**
+	 * Forgets about all values pushed, so they are pushed again by the next flush.
+	 */
+	public void invalidate() {
+		for (int field = 0; field < NumFields; field++) {
+			if (pushed[field] && (dirtyFields & (1 << field)) == 0) {
+				if (field < NumStringFields) {
+					pendingStrings[field] = pushedStrings[field];
+				} else {
+					pendingInts[field] = pushedInts[field];
+				}
+				dirtyFields |= 1 << field;
+			}
+			pushed[field] = false;
+		}
+
+		if (!clearKeyValues) {
+			for (Map.Entry<String, String> entry : pushedKeyValues.entrySet()) {
+				if (!pendingKeyValues.containsKey(entry.getKey())) {
+					pendingKeyValues.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		pushedKeyValues.clear();
+
+		for (int slot = 0; slot < users.capacity(); slot++) {
+			User user = users.valueAt(slot);
+			if (user != null && user.pushed) {
+				user.pushed = false;
+				if (!user.dirty) {
+					updateUserData(users.keyAt(slot), user.pushedName, user.pushedScore);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pushes all changed values with one native call.
+	 *
+	 * Returns the number of values pushed.
+	 */
+	public int flush(SteamGameServer server) {
+		SteamGameServerQueryResponder responder = server.getQueryResponder();
+		int count = 0;
+		strings.clear();
+
+		for (int field = 0; field < NumFields; field++) {
+			if ((dirtyFields & (1 << field)) != 0) {
+				if (responder != null) {
+					forward(responder, field);
+				}
+				if (field < NumStringFields) {
+					count = addOp(count, field, pendingStrings[field], null, 0, 0);
+					pushedStrings[field] = pendingStrings[field];
+					pendingStrings[field] = null;
+				} else {
+					count = addOp(count, field, null, null, pendingInts[field], 0);
+					pushedInts[field] = pendingInts[field];
+				}
+				pushed[field] = true;
+			}
+		}
+		dirtyFields = 0;
+
+		if (clearKeyValues) {
+			count = addOp(count, ClearAllKeyValues, null, null, 0, 0);
+			if (responder != null) {
+				responder.clearAllKeyValues();
+			}
+			pushedKeyValues.clear();
+			clearKeyValues = false;
+		}
+
+		for (Map.Entry<String, String> entry : pendingKeyValues.entrySet()) {
+			count = addOp(count, KeyValue, entry.getKey(), entry.getValue(), 0, 0);
+			if (responder != null) {
+				responder.setKeyValue(entry.getKey(), entry.getValue());
+			}
+			pushedKeyValues.put(entry.getKey(), entry.getValue());
+		}
+		pendingKeyValues.clear();
+
+		for (int i = 0; i < numDirtyUsers; i++) {
+			User user = users.get(dirtyUsers[i]);
+			if (user != null && user.dirty) {
+				count = addOp(count, UserData, user.pendingName, null, user.pendingScore, dirtyUsers[i]);
+				if (responder != null) {
+					responder.updateUserData(dirtyUsers[i], user.pendingName, user.pendingScore);
+				}
+				user.pushedName = user.pendingName;
+				user.pushedScore = user.pendingScore;
+				user.pushed = true;
+				user.pendingName = null;
+				user.dirty = false;
+			}
+		}
+		numDirtyUsers = 0;
+
+		if (count > 0) {
+			numFailedUserUpdates += SteamGameServerNative.flushServerInfo(server.pointer, count, ops, steamIDs, strings);
+		}
+
+		numPushed += count;
+		return count;
+	}
+
+	/**
+	 * Returns the number of values pushed to Steam.
+	 */
+	public long getPushedUpdates() {
+		return numPushed;
+	}
+
+	/**
+	 * Returns the number of updates which didn't need to be pushed, because they didn't change a value,
+	 * or were overwritten before the next flush.
+	 */
+	public long getSuppressedUpdates() {
+		return numSuppressed;
+	}
+
+	/**
+	 * Returns the number of user data updates rejected by Steam.
+	 */
+	public long getFailedUserUpdates() {
+		return numFailedUserUpdates;
+	}
+
+	private void setString(int field, String value) {
+		value = nonNull(value);
+
+		if (pushed[field] && value.equals(pushedStrings[field])) {
+			pendingStrings[field] = null;
+			dirtyFields &= ~(1 << field);
+			numSuppressed++;
+		} else {
+			if ((dirtyFields & (1 << field)) != 0) {
+				numSuppressed++;
+			}
+			pendingStrings[field] = value;
+			dirtyFields |= 1 << field;
+		}
+	}
+
+	private void setInt(int field, int value) {
+		if (pushed[field] && value == pushedInts[field]) {
+			dirtyFields &= ~(1 << field);
+			numSuppressed++;
+		} else {
+			if ((dirtyFields & (1 << field)) != 0) {
+				numSuppressed++;
+			}
+			pendingInts[field] = value;
+			dirtyFields |= 1 << field;
+		}
+	}
+
+	private int addOp(int index, int type, String string0, String string1, int value, long steamID) {
+		if ((index + 1) * OpStride > ops.length) {
+			int[] grownOps = new int[ops.length * 2];
+			System.arraycopy(ops, 0, grownOps, 0, ops.length);
+			ops = grownOps;
+
+			long[] grownIDs = new long[steamIDs.length * 2];
+			System.arraycopy(steamIDs, 0, grownIDs, 0, steamIDs.length);
+			steamIDs = grownIDs;
+		}
+
+		int op = index * OpStride;
+		ops[op] = type;
+		ops[op + 1] = putString(string0);
+		ops[op + 2] = putString(string1);
+		ops[op + 3] = value;
+		steamIDs[index] = steamID;
+
+		return index + 1;
+	}
+
+	/**
+	 * Appends a null-terminated UTF-8 string, and returns its offset.
+	 */
+	private int putString(String value) {
+		byte[] bytes = value != null ? value.getBytes(UTF8) : new byte[0];
+
+		if (strings.remaining() < bytes.length + 1) {
+			int capacity = strings.capacity();
+			while (capacity - strings.position() < bytes.length + 1) {
+				capacity *= 2;
+			}
+			ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+			strings.flip();
+			grown.put(strings);
+			strings = grown;
+		}
+
+		int offset = strings.position();
+		strings.put(bytes);
+		strings.put((byte) 0);
+		return offset;
+	}
+
+	private void forward(SteamGameServerQueryResponder responder, int field) {
+		switch (field) {
+			case ServerName:
+				responder.setServerName(pendingStrings[field]);
+				break;
+			case MapName:
+				responder.setMapName(pendingStrings[field]);
+				break;
+			case GameTags:
+				responder.setGameTags(pendingStrings[field]);
+				break;
+			case MaxPlayerCount:
+				responder.setMaxPlayerCount(pendingInts[field]);
+				break;
+			case BotPlayerCount:
+				responder.setBotPlayerCount(pendingInts[field]);
+				break;
+			case PasswordProtected:
+				responder.setPasswordProtected(pendingInts[field] != 0);
+				break;
+			default:
+				break;
+		}
+	}
+
+	private static String nonNull(String value) {
+		return value != null ? value : "";
+	}
+
+}
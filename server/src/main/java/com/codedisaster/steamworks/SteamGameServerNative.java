@@ -129,6 +129,37 @@ class SteamGameServerNative {
 		server->SetRegion(region);
 	*/
 
+	static native int flushServerInfo(long pointer, int count, int[] ops, long[] steamIDs, ByteBuffer strings); /*
+		ISteamGameServer* server = (ISteamGameServer*) pointer;
+		int failed = 0;
+
+		for (int i = 0; i < count; i++) {
+			const jint* op = &ops[i * 4];
+			const char* string0 = &strings[op[1]];
+			const char* string1 = &strings[op[2]];
+
+			switch (op[0]) {
+				case 0: server->SetServerName(string0); break;
+				case 1: server->SetMapName(string0); break;
+				case 2: server->SetGameTags(string0); break;
+				case 3: server->SetGameData(string0); break;
+				case 4: server->SetRegion(string0); break;
+				case 5: server->SetMaxPlayerCount(op[3]); break;
+				case 6: server->SetBotPlayerCount(op[3]); break;
+				case 7: server->SetPasswordProtected(op[3] != 0); break;
+				case 8: server->ClearAllKeyValues(); break;
+				case 9: server->SetKeyValue(string0, string1); break;
+				case 10:
+					if (!server->BUpdateUserData((uint64) steamIDs[i], string0, op[3])) {
+						failed++;
+					}
+					break;
+			}
+		}
+
+		return failed;
+	*/
+
 	static native boolean sendUserConnectAndAuthenticate(long pointer, int clientIP, ByteBuffer authBlob,
 																 int offset, int size, long[] steamIDUser); /*
 		ISteamGameServer* server = (ISteamGameServer*) pointer;
@@ -205,6 +236,35 @@ class SteamGameServerNative {
 		return server->GetNextOutgoingPacket(&out[offset], size, (uint32*) netAdr, (uint16*) port);
 	*/
 
+	static native int drainOutgoingPackets(long pointer, ByteBuffer out, int offset, int size,
+										   int maxPacketSize, int maxPackets, int[] index); /*
+
+		ISteamGameServer* server = (ISteamGameServer*) pointer;
+		int count = 0;
+
+		while (count < maxPackets && size >= maxPacketSize) {
+			uint32 address = 0;
+			uint16 port = 0;
+
+			int received = server->GetNextOutgoingPacket(&out[offset], size, &address, &port);
+			if (received <= 0) {
+				break;
+			}
+
+			jint* entry = &index[count * 4];
+			entry[0] = offset;
+			entry[1] = received;
+			entry[2] = (jint) address;
+			entry[3] = (jint) port;
+			count++;
+
+			offset += received;
+			size -= received;
+		}
+
+		return count;
+	*/
+
 	static native void enableHeartbeats(long pointer, boolean active); /*
 		ISteamGameServer* server = (ISteamGameServer*) pointer;
 		server->EnableHeartbeats(active);
@@ -0,0 +1,585 @@
+package com.codedisaster.steamworks;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Answers A2S_INFO, A2S_PLAYER and A2S_RULES server queries on the Java side, instead of passing them
+ * to {@link SteamGameServer#handleIncomingPacket(ByteBuffer, int, short)}.
+ * <p>
+ * Attach an instance with {@link SteamGameServer#setQueryResponder(SteamGameServerQueryResponder)} to receive
+ * the values passed to the server info setters, like {@link SteamGameServer#setServerName(String)} or
+ * {@link SteamGameServer#updateUserData(SteamID, String, int)}, then pass it to
+ * {@link SteamGameServerSocketShare#setQueryResponder(SteamGameServerQueryResponder)} to handle queries.
+ * <p>
+ * Encoded responses are cached until one of their values changes. Player responses, which contain the
+ * time each player has been connected, are rebuilt at most once per second. Queries require a challenge,
+ * and are rate limited per source address.
+ * <p>
+ * Setters and query handling are synchronized, so values can be changed from another thread.
+ */
+public class SteamGameServerQueryResponder {
+
+	private static final byte A2S_INFO = 'T';
+	private static final byte A2S_PLAYER = 'U';
+	private static final byte A2S_RULES = 'V';
+
+	private static final byte S2A_INFO = 'I';
+	private static final byte S2A_PLAYER = 'D';
+	private static final byte S2A_RULES = 'E';
+	private static final byte S2C_CHALLENGE = 'A';
+
+	private static final int SinglePacketHeader = 0xffffffff;
+	private static final int SplitPacketHeader = 0xfffffffe;
+
+	private static final int MaxPacketSize = 1400;
+	private static final int SplitPayloadSize = 1248;
+	private static final int SplitHeaderSize = 12;
+
+	private static final String InfoPayload = "Source Engine Query";
+	private static final int InfoPayloadSize = InfoPayload.length() + 1;
+
+	private static final long PlayerCacheNanos = 1000 * 1000000L;
+	private static final long ChallengeIntervalNanos = 30 * 1000000000L;
+	private static final long RateBucketExpiryNanos = 60 * 1000000000L;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static class Player {
+		String name;
+		int score;
+		final long connectTime;
+
+		Player(long connectTime) {
+			this.connectTime = connectTime;
+		}
+	}
+
+	private static class RateBucket {
+		float tokens;
+		long lastUpdate;
+	}
+
+	private final int appID;
+	private final String version;
+	private final short gamePort;
+
+	private long steamID;
+	private String serverName = "";
+	private String mapName = "";
+	private String modDir = "";
+	private String gameDescription = "";
+	private String gameTags = "";
+	private int maxPlayerCount;
+	private int botPlayerCount;
+	private boolean passwordProtected;
+	private boolean dedicated = true;
+	private boolean secure;
+
+	private final Map<String, String> rules = new LinkedHashMap<String, String>();
+	private final SteamLongMap<Player> players = new SteamLongMap<Player>();
+
+	private ByteBuffer[] infoResponse;
+	private ByteBuffer[] playerResponse;
+	private ByteBuffer[] rulesResponse;
+	private long playerResponseTime;
+
+	private final SteamLongMap<RateBucket> rateBuckets = new SteamLongMap<RateBucket>();
+	private long[] expiredBuckets = new long[64];
+	private long lastBucketSweep;
+	private float queriesPerSecond = 10.0f;
+	private float queryBurst = 20.0f;
+
+	private final int challengeSecret = new Random().nextInt();
+	private final ByteBuffer challengeResponse = ByteBuffer.allocateDirect(9).order(ByteOrder.LITTLE_ENDIAN);
+
+	private int nextSplitID;
+	private ByteBuffer encodeBuffer = ByteBuffer.allocate(MaxPacketSize).order(ByteOrder.LITTLE_ENDIAN);
+
+	private long queriesAnswered;
+	private long challengesSent;
+	private long queriesDropped;
+	private long responsesEncoded;
+
+	/**
+	 * @param appID the game's app ID
+	 * @param version the game version, as passed to {@link SteamGameServerAPI#init}
+	 * @param gamePort the game port
+	 */
+	public SteamGameServerQueryResponder(int appID, String version, short gamePort) {
+		this.appID = appID;
+		this.version = version;
+		this.gamePort = gamePort;
+	}
+
+	/**
+	 * Limits the number of queries answered per source address, with a token bucket.
+	 * Defaults to 10 queries per second, with bursts of up to 20 queries.
+	 */
+	public synchronized void setRateLimit(float queriesPerSecond, float burst) {
+		this.queriesPerSecond = queriesPerSecond;
+		this.queryBurst = burst;
+	}
+
+	public synchronized void setSteamID(long steamID) {
+		this.steamID = steamID;
+		infoResponse = null;
+	}
+
+	public synchronized void setSecure(boolean secure) {
+		this.secure = secure;
+		infoResponse = null;
+	}
+
+	public synchronized void setServerName(String serverName) {
+		serverName = nonNull(serverName);
+		if (!this.serverName.equals(serverName)) {
+			this.serverName = serverName;
+			infoResponse = null;
+		}
+	}
+
+	public synchronized void setMapName(String mapName) {
+		mapName = nonNull(mapName);
+		if (!this.mapName.equals(mapName)) {
+			this.mapName = mapName;
+			infoResponse = null;
+		}
+	}
+
+	public synchronized void setModDir(String modDir) {
+		modDir = nonNull(modDir);
+		if (!this.modDir.equals(modDir)) {
+			this.modDir = modDir;
+			infoResponse = null;
+		}
+	}
+
+	public synchronized void setGameDescription(String gameDescription) {
+		gameDescription = nonNull(gameDescription);
+		if (!this.gameDescription.equals(gameDescription)) {
+			this.gameDescription = gameDescription;
+			infoResponse = null;
+		}
+	}
+
+	public synchronized void setGameTags(String gameTags) {
+		gameTags = nonNull(gameTags);
+		if (!this.gameTags.equals(gameTags)) {
+			this.gameTags = gameTags;
+			infoResponse = null;
+		}
+	}
+
+	public synchronized void setMaxPlayerCount(int maxPlayerCount) {
+		if (this.maxPlayerCount != maxPlayerCount) {
+			this.maxPlayerCount = maxPlayerCount;
+			infoResponse = null;
+		}
+	}
+
+	public synchronized void setBotPlayerCount(int botPlayerCount) {
+		if (this.botPlayerCount != botPlayerCount) {
+			this.botPlayerCount = botPlayerCount;
+			infoResponse = null;
+		}
+	}
+
+	public synchronized void setPasswordProtected(boolean passwordProtected) {
+		if (this.passwordProtected != passwordProtected) {
+			this.passwordProtected = passwordProtected;
+			infoResponse = null;
+		}
+	}
+
+	public synchronized void setDedicatedServer(boolean dedicated) {
+		if (this.dedicated != dedicated) {
+			this.dedicated = dedicated;
+			infoResponse = null;
+		}
+	}
+
+	public synchronized void setKeyValue(String key, String value) {
+		value = nonNull(value);
+		String previous = rules.put(key, value);
+		if (previous == null || !previous.equals(value)) {
+			rulesResponse = null;
+		}
+	}
+
+	public synchronized void clearAllKeyValues() {
+		if (!rules.isEmpty()) {
+			rules.clear();
+			rulesResponse = null;
+		}
+	}
+
+	public synchronized void updateUserData(long steamIDUser, String playerName, int score) {
+		Player player = players.get(steamIDUser);
+
+		if (player == null) {
+			player = new Player(System.nanoTime());
+			players.put(steamIDUser, player);
+			infoResponse = null;
+		} else if (player.score == score && player.name.equals(nonNull(playerName))) {
+			return;
+		}
+
+		player.name = nonNull(playerName);
+		player.score = score;
+		playerResponse = null;
+	}
+
+	public synchronized void removeUser(long steamIDUser) {
+		if (players.remove(steamIDUser) != null) {
+			infoResponse = null;
+			playerResponse = null;
+		}
+	}
+
+	/**
+	 * Answers a query packet, if it is an A2S_INFO, A2S_PLAYER or A2S_RULES query.
+	 *
+	 * Returns false for other packets, which should be passed to
+	 * {@link SteamGameServer#handleIncomingPacket(ByteBuffer, int, short)}.
+	 */
+	public synchronized boolean handleQueryPacket(DatagramChannel channel, InetSocketAddress source,
+												  ByteBuffer packet) throws IOException {
+
+		int position = packet.position();
+		int size = packet.remaining();
+
+		if (size < 5 || packet.getInt(position) != SinglePacketHeader) {
+			return false;
+		}
+
+		byte type = packet.get(position + 4);
+		if (type != A2S_INFO && type != A2S_PLAYER && type != A2S_RULES) {
+			return false;
+		}
+
+		InetAddress address = source.getAddress();
+		if (!(address instanceof Inet4Address)) {
+			return false;
+		}
+
+		byte[] ip = address.getAddress();
+		int sourceIP = ((ip[0] & 0xff) << 24) | ((ip[1] & 0xff) << 16) | ((ip[2] & 0xff) << 8) | (ip[3] & 0xff);
+		long now = System.nanoTime();
+
+		if (!acquireToken(sourceIP, now)) {
+			queriesDropped++;
+			return true;
+		}
+
+		int challengeOffset = type == A2S_INFO ? 5 + InfoPayloadSize : 5;
+		int challenge = size >= challengeOffset + 4 ? getIntLE(packet, position + challengeOffset) : -1;
+
+		if (!isValidChallenge(sourceIP, challenge, now)) {
+			challengeResponse.clear();
+			challengeResponse.putInt(SinglePacketHeader);
+			challengeResponse.put(S2C_CHALLENGE);
+			challengeResponse.putInt(createChallenge(sourceIP, now / ChallengeIntervalNanos));
+			challengeResponse.flip();
+			channel.send(challengeResponse, source);
+			challengesSent++;
+			return true;
+		}
+
+		ByteBuffer[] response;
+		switch (type) {
+			case A2S_INFO:
+				if (infoResponse == null) {
+					infoResponse = encodeInfo();
+				}
+				response = infoResponse;
+				break;
+			case A2S_PLAYER:
+				if (playerResponse == null || now - playerResponseTime >= PlayerCacheNanos) {
+					playerResponse = encodePlayers(now);
+					playerResponseTime = now;
+				}
+				response = playerResponse;
+				break;
+			default:
+				if (rulesResponse == null) {
+					rulesResponse = encodeRules();
+				}
+				response = rulesResponse;
+				break;
+		}
+
+		for (ByteBuffer datagram : response) {
+			channel.send(datagram.duplicate(), source);
+		}
+
+		queriesAnswered++;
+		return true;
+	}
+
+	public synchronized long getQueriesAnswered() {
+		return queriesAnswered;
+	}
+
+	public synchronized long getChallengesSent() {
+		return challengesSent;
+	}
+
+	/**
+	 * Returns the number of queries ignored due to rate limiting.
+	 */
+	public synchronized long getQueriesDropped() {
+		return queriesDropped;
+	}
+
+	/**
+	 * Returns the number of responses encoded, as opposed to answered from the cache.
+	 */
+	public synchronized long getResponsesEncoded() {
+		return responsesEncoded;
+	}
+
+	private boolean acquireToken(int sourceIP, long now) {
+		if (now - lastBucketSweep >= RateBucketExpiryNanos) {
+			sweepRateBuckets(now);
+		}
+
+		RateBucket bucket = rateBuckets.get(sourceIP);
+		if (bucket == null) {
+			bucket = new RateBucket();
+			bucket.tokens = queryBurst;
+			bucket.lastUpdate = now;
+			rateBuckets.put(sourceIP, bucket);
+		} else {
+			float refill = (now - bucket.lastUpdate) * queriesPerSecond / 1.0e9f;
+			bucket.tokens = Math.min(queryBurst, bucket.tokens + refill);
+			bucket.lastUpdate = now;
+		}
+
+		if (bucket.tokens < 1.0f) {
+			return false;
+		}
+
+		bucket.tokens -= 1.0f;
+		return true;
+	}
+
+	private void sweepRateBuckets(long now) {
+		int count = 0;
+
+		for (int slot = 0; slot < rateBuckets.capacity(); slot++) {
+			RateBucket bucket = rateBuckets.valueAt(slot);
+			if (bucket != null && now - bucket.lastUpdate >= RateBucketExpiryNanos) {
+				if (count == expiredBuckets.length) {
+					long[] expired = new long[count * 2];
+					System.arraycopy(expiredBuckets, 0, expired, 0, count);
+					expiredBuckets = expired;
+				}
+				expiredBuckets[count++] = rateBuckets.keyAt(slot);
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			rateBuckets.remove(expiredBuckets[i]);
+		}
+
+		lastBucketSweep = now;
+	}
+
+	private boolean isValidChallenge(int sourceIP, int challenge, long now) {
+		long interval = now / ChallengeIntervalNanos;
+		return challenge == createChallenge(sourceIP, interval) || challenge == createChallenge(sourceIP, interval - 1);
+	}
+
+	private int createChallenge(int sourceIP, long interval) {
+		int challenge = SteamLongMap.hash(((long) sourceIP << 32) ^ interval ^ challengeSecret);
+		// -1 is used by clients to request a challenge
+		return challenge != -1 ? challenge : 0;
+	}
+
+	private ByteBuffer[] encodeInfo() {
+		ByteBuffer out = beginResponse(S2A_INFO);
+
+		int numPlayers = Math.min(players.size(), 255);
+
+		out.put((byte) 17);
+		out = putString(out, serverName);
+		out = putString(out, mapName);
+		out = putString(out, modDir);
+		out = putString(out, gameDescription);
+		out = ensureCapacity(out, 9);
+		out.putShort((short) appID);
+		out.put((byte) numPlayers);
+		out.put((byte) Math.min(maxPlayerCount, 255));
+		out.put((byte) Math.min(botPlayerCount, 255));
+		out.put((byte) (dedicated ? 'd' : 'l'));
+		out.put((byte) environment());
+		out.put((byte) (passwordProtected ? 1 : 0));
+		out.put((byte) (secure ? 1 : 0));
+		out = putString(out, version);
+
+		int edf = 0x80 | 0x01;
+		if (steamID != 0) {
+			edf |= 0x10;
+		}
+		if (gameTags.length() > 0) {
+			edf |= 0x20;
+		}
+
+		out = ensureCapacity(out, 11);
+		out.put((byte) edf);
+		out.putShort(gamePort);
+		if ((edf & 0x10) != 0) {
+			out.putLong(steamID);
+		}
+		if ((edf & 0x20) != 0) {
+			out = putString(out, gameTags);
+		}
+		out = ensureCapacity(out, 8);
+		out.putLong(appID & 0xffffffL);
+
+		return endResponse(out);
+	}
+
+	private ByteBuffer[] encodePlayers(long now) {
+		ByteBuffer out = beginResponse(S2A_PLAYER);
+
+		int countPosition = out.position();
+		out.put((byte) 0);
+
+		int count = 0;
+		for (int slot = 0; slot < players.capacity() && count < 255; slot++) {
+			Player player = players.valueAt(slot);
+			if (player != null) {
+				out = ensureCapacity(out, 1);
+				out.put((byte) 0);
+				out = putString(out, player.name);
+				out = ensureCapacity(out, 8);
+				out.putInt(player.score);
+				out.putFloat((now - player.connectTime) / 1.0e9f);
+				count++;
+			}
+		}
+
+		out.put(countPosition, (byte) count);
+		return endResponse(out);
+	}
+
+	private ByteBuffer[] encodeRules() {
+		ByteBuffer out = beginResponse(S2A_RULES);
+		out.putShort((short) rules.size());
+
+		for (Map.Entry<String, String> rule : rules.entrySet()) {
+			out = putString(out, rule.getKey());
+			out = putString(out, rule.getValue());
+		}
+
+		return endResponse(out);
+	}
+
+	private ByteBuffer beginResponse(byte type) {
+		ByteBuffer out = encodeBuffer;
+		out.clear();
+		out.putInt(SinglePacketHeader);
+		out.put(type);
+		return out;
+	}
+
+	/**
+	 * Copies an encoded response into direct buffers, split into multiple packets if needed.
+	 */
+	private ByteBuffer[] endResponse(ByteBuffer out) {
+		encodeBuffer = out;
+		out.flip();
+		responsesEncoded++;
+
+		int size = out.remaining();
+
+		if (size <= MaxPacketSize) {
+			ByteBuffer packet = ByteBuffer.allocateDirect(size);
+			packet.put(out);
+			packet.flip();
+			return new ByteBuffer[] { packet };
+		}
+
+		int numPackets = (size + SplitPayloadSize - 1) / SplitPayloadSize;
+		int id = nextSplitID++ & 0x7fffffff;
+
+		List<ByteBuffer> packets = new ArrayList<ByteBuffer>(numPackets);
+		for (int i = 0; i < numPackets; i++) {
+			int length = Math.min(SplitPayloadSize, out.remaining());
+
+			ByteBuffer packet = ByteBuffer.allocateDirect(SplitHeaderSize + length).order(ByteOrder.LITTLE_ENDIAN);
+			packet.putInt(SplitPacketHeader);
+			packet.putInt(id);
+			packet.put((byte) numPackets);
+			packet.put((byte) i);
+			packet.putShort((short) SplitPayloadSize);
+
+			ByteBuffer chunk = out.duplicate();
+			chunk.limit(chunk.position() + length);
+			packet.put(chunk);
+			out.position(out.position() + length);
+
+			packet.flip();
+			packets.add(packet);
+		}
+
+		return packets.toArray(new ByteBuffer[numPackets]);
+	}
+
+	private ByteBuffer putString(ByteBuffer out, String value) {
+		byte[] bytes = value != null ? value.getBytes(UTF8) : new byte[0];
+		out = ensureCapacity(out, bytes.length + 1);
+		out.put(bytes);
+		out.put((byte) 0);
+		return out;
+	}
+
+	private ByteBuffer ensureCapacity(ByteBuffer out, int bytes) {
+		if (out.remaining() >= bytes) {
+			return out;
+		}
+
+		int capacity = out.capacity();
+		while (capacity - out.position() < bytes) {
+			capacity *= 2;
+		}
+
+		ByteBuffer larger = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+		out.flip();
+		larger.put(out);
+		return larger;
+	}
+
+	private static String nonNull(String value) {
+		return value != null ? value : "";
+	}
+
+	private static int getIntLE(ByteBuffer buffer, int index) {
+		return (buffer.get(index) & 0xff) | ((buffer.get(index + 1) & 0xff) << 8)
+				| ((buffer.get(index + 2) & 0xff) << 16) | ((buffer.get(index + 3) & 0xff) << 24);
+	}
+
+	private static char environment() {
+		String os = System.getProperty("os.name").toLowerCase();
+		if (os.contains("win")) {
+			return 'w';
+		} else if (os.contains("mac")) {
+			return 'm';
+		}
+		return 'l';
+	}
+
+}
@@ -0,0 +1,272 @@
+package com.codedisaster.steamworks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * UDP socket shared between the game and Steam, for game servers initialized with a query port of
+ * <code>0xFFFF</code>, which tells Steam to use the game socket for server queries.
+ * <p>
+ * Owns a non-blocking {@link DatagramChannel}. Each call to {@link SteamGameServerSocketShare#update(long)}
+ * waits for incoming packets, receives them in batches, passes Steam query packets (starting with
+ * <code>0xFFFFFFFF</code>) to {@link SteamGameServer#handleIncomingPacket(ByteBuffer, int, short)}, and
+ * all other packets to a {@link GamePacketHandler}. Afterwards, outgoing Steam packets are fetched with
+ * one call to {@link SteamGameServer#drainOutgoingPackets(ByteBuffer, SteamGameServer.OutgoingPacketBatch)}
+ * and sent.
+ * <p>
+ * This class is not thread safe, except for {@link SteamGameServerSocketShare#wakeup()}.
+ */
+public class SteamGameServerSocketShare implements Closeable {
+
+	/**
+	 * The game server functions used by the socket share. Forwards to {@link SteamGameServer} by default,
+	 * and can be stubbed to run without Steam.
+	 */
+	public interface GameServer {
+
+		boolean handleIncomingPacket(ByteBuffer data, int srcIP, short srcPort);
+
+		int drainOutgoingPackets(ByteBuffer out, SteamGameServer.OutgoingPacketBatch batch) throws SteamException;
+
+	}
+
+	public interface GamePacketHandler {
+
+		/**
+		 * Called for each packet which isn't a Steam query packet. The packet data is located between
+		 * <code>data.position()</code> and <code>data.limit()</code>. The buffer is reused, and must not be
+		 * accessed after this function returns.
+		 */
+		void onGamePacket(InetSocketAddress source, ByteBuffer data);
+
+	}
+
+	private static final int MaxPacketSize = 64 * 1024;
+	private static final int MaxCachedAddresses = 256;
+
+	private final GameServer server;
+	private final GamePacketHandler handler;
+
+	private final DatagramChannel channel;
+	private final Selector selector;
+
+	private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(MaxPacketSize);
+	private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(16 * SteamGameServer.MaxOutgoingPacketSize);
+	private final SteamGameServer.OutgoingPacketBatch outgoing = new SteamGameServer.OutgoingPacketBatch(64);
+	private final SteamLongMap<InetSocketAddress> addresses = new SteamLongMap<InetSocketAddress>();
+
+	private SteamGameServerQueryResponder queryResponder;
+	private int maxPacketsPerUpdate = 256;
+
+	private long queryPacketsReceived;
+	private long gamePacketsReceived;
+	private long packetsSent;
+	private long sendFailures;
+
+	public SteamGameServerSocketShare(final SteamGameServer server, InetSocketAddress bindAddress,
+									  GamePacketHandler handler) throws IOException {
+
+		this(new GameServer() {
+			@Override
+			public boolean handleIncomingPacket(ByteBuffer data, int srcIP, short srcPort) {
+				return server.handleIncomingPacket(data, srcIP, srcPort);
+			}
+
+			@Override
+			public int drainOutgoingPackets(ByteBuffer out, SteamGameServer.OutgoingPacketBatch batch)
+					throws SteamException {
+				return server.drainOutgoingPackets(out, batch);
+			}
+		}, bindAddress, handler);
+	}
+
+	public SteamGameServerSocketShare(GameServer server, InetSocketAddress bindAddress,
+									  GamePacketHandler handler) throws IOException {
+
+		this.server = server;
+		this.handler = handler;
+
+		channel = DatagramChannel.open();
+		try {
+			channel.configureBlocking(false);
+			channel.socket().bind(bindAddress);
+			selector = Selector.open();
+			channel.register(selector, SelectionKey.OP_READ);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Sets a responder to answer A2S queries directly. Other query packets are still passed to Steam.
+	 */
+	public void setQueryResponder(SteamGameServerQueryResponder queryResponder) {
+		this.queryResponder = queryResponder;
+	}
+
+	/**
+	 * Limits the number of packets received per update. Defaults to 256.
+	 */
+	public void setMaxPacketsPerUpdate(int maxPackets) {
+		maxPacketsPerUpdate = maxPackets;
+	}
+
+	public DatagramChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Waits up to <code>timeoutMillis</code> milliseconds for incoming packets, or not at all if zero,
+	 * processes them, then sends outgoing Steam packets.
+	 *
+	 * Returns the number of packets received.
+	 */
+	public int update(long timeoutMillis) throws IOException, SteamException {
+		int selected = timeoutMillis > 0 ? selector.select(timeoutMillis) : selector.selectNow();
+
+		int received = 0;
+		if (selected > 0) {
+			selector.selectedKeys().clear();
+			received = receivePackets();
+		}
+
+		flushOutgoingPackets();
+		return received;
+	}
+
+	/**
+	 * Fetches outgoing Steam packets, and sends them, until Steam has no more packets queued. Returns the
+	 * number of packets sent.
+	 */
+	public int flushOutgoingPackets() throws IOException, SteamException {
+		int sent = 0;
+		int count;
+
+		do {
+			sendBuffer.clear();
+			count = server.drainOutgoingPackets(sendBuffer, outgoing);
+
+			for (int i = 0; i < count; i++) {
+				int offset = outgoing.getOffset(i);
+				sendBuffer.limit(offset + outgoing.getSize(i));
+				sendBuffer.position(offset);
+
+				InetSocketAddress target = getAddress(outgoing.getAddress(i), outgoing.getPort(i));
+				if (channel.send(sendBuffer, target) > 0) {
+					sent++;
+				} else {
+					// send buffer full, drop the packet like UDP would
+					sendFailures++;
+				}
+			}
+			// a drain also stops early if the buffer can't hold another packet of maximum size
+		} while (count > 0);
+
+		packetsSent += sent;
+		return sent;
+	}
+
+	/**
+	 * Wakes up a thread blocked in {@link SteamGameServerSocketShare#update(long)}.
+	 */
+	public void wakeup() {
+		selector.wakeup();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			selector.close();
+		} finally {
+			channel.close();
+		}
+	}
+
+	public long getQueryPacketsReceived() {
+		return queryPacketsReceived;
+	}
+
+	public long getGamePacketsReceived() {
+		return gamePacketsReceived;
+	}
+
+	public long getPacketsSent() {
+		return packetsSent;
+	}
+
+	public long getSendFailures() {
+		return sendFailures;
+	}
+
+	private int receivePackets() throws IOException {
+		int received = 0;
+
+		while (received < maxPacketsPerUpdate) {
+			receiveBuffer.clear();
+			SocketAddress source = channel.receive(receiveBuffer);
+			if (source == null) {
+				break;
+			}
+
+			receiveBuffer.flip();
+			received++;
+
+			InetSocketAddress address = (InetSocketAddress) source;
+
+			if (isQueryPacket(receiveBuffer)) {
+				queryPacketsReceived++;
+
+				if (queryResponder != null && queryResponder.handleQueryPacket(channel, address, receiveBuffer)) {
+					continue;
+				}
+
+				InetAddress inetAddress = address.getAddress();
+				if (inetAddress instanceof Inet4Address) {
+					server.handleIncomingPacket(receiveBuffer, toInt(inetAddress.getAddress()),
+							(short) address.getPort());
+				}
+			} else if (handler != null) {
+				gamePacketsReceived++;
+				handler.onGamePacket(address, receiveBuffer);
+			}
+		}
+
+		return received;
+	}
+
+	private static boolean isQueryPacket(ByteBuffer packet) {
+		return packet.remaining() >= 4 && packet.getInt(packet.position()) == 0xffffffff;
+	}
+
+	private InetSocketAddress getAddress(int ip, int port) throws IOException {
+		long key = ((ip & 0xffffffffL) << 16) | (port & 0xffff);
+
+		InetSocketAddress address = addresses.get(key);
+		if (address == null) {
+			if (addresses.size() >= MaxCachedAddresses) {
+				addresses.clear();
+			}
+
+			byte[] bytes = {(byte) (ip >>> 24), (byte) (ip >>> 16), (byte) (ip >>> 8), (byte) ip};
+			address = new InetSocketAddress(InetAddress.getByAddress(bytes), port & 0xffff);
+			addresses.put(key, address);
+		}
+
+		return address;
+	}
+
+	private static int toInt(byte[] address) {
+		return ((address[0] & 0xff) << 24) | ((address[1] & 0xff) << 16)
+				| ((address[2] & 0xff) << 8) | (address[3] & 0xff);
+	}
+
+}
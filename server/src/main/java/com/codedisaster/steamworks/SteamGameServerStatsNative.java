@@ -1,5 +1,7 @@
 package com.codedisaster.steamworks;
 
+import java.nio.ByteBuffer;
+
 class SteamGameServerStatsNative {
 
 	// @off
@@ -62,4 +64,43 @@ class SteamGameServerStatsNative {
 		return stats->StoreUserStats((uint64) steamIDUser);
 	*/
 
+	static native void applyUserStats(long pointer, ByteBuffer nameTable, int numUsers, long[] steamIDs,
+									  int[] updateEnds, int[] types, int[] names, int[] values, int[] results,
+									  boolean storeStats, long[] apiCalls); /*
+
+		ISteamGameServerStats* stats = (ISteamGameServerStats*) pointer;
+		int update = 0;
+
+		for (int user = 0; user < numUsers; user++) {
+			CSteamID steamIDUser((uint64) steamIDs[user]);
+
+			for (; update < updateEnds[user]; update++) {
+				const char* name = &nameTable[names[update]];
+				bool result = false;
+
+				switch (types[update]) {
+					case 0:
+						result = stats->SetUserStat(steamIDUser, name, (int32) values[update]);
+						break;
+					case 1: {
+						float value;
+						memcpy(&value, &values[update], sizeof(float));
+						result = stats->SetUserStat(steamIDUser, name, value);
+						break;
+					}
+					case 2:
+						result = stats->SetUserAchievement(steamIDUser, name);
+						break;
+					case 3:
+						result = stats->ClearUserAchievement(steamIDUser, name);
+						break;
+				}
+
+				results[update] = result ? 1 : 0;
+			}
+
+			apiCalls[user] = storeStats ? (jlong) stats->StoreUserStats(steamIDUser) : 0;
+		}
+	*/
+
 }
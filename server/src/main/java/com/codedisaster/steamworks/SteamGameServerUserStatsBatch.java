@@ -0,0 +1,321 @@
+package com.codedisaster.steamworks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects stat and achievement updates for many users, and applies them with one native call.
+ * <p>
+ * Stat and achievement names are registered once with {@link SteamGameServerUserStatsBatch#internName(String)},
+ * which returns a handle to pass to the update functions. Names are stored in a native string table, so
+ * they aren't converted again for each update.
+ * <p>
+ * Updates are accumulated per user, in primitive arrays. {@link SteamGameServerUserStatsBatch#apply(boolean)}
+ * applies the updates of all users, and optionally stores their stats, with one native call. Updates
+ * rejected by Steam are reported afterwards with {@link SteamGameServerUserStatsBatch#getNumFailures()}
+ * and related functions.
+ * <p>
+ * This class is not thread safe.
+ */
+public class SteamGameServerUserStatsBatch {
+
+	static final int SetStatI = 0;
+	static final int SetStatF = 1;
+	static final int SetAchievement = 2;
+	static final int ClearAchievement = 3;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static class UserUpdates {
+		final long steamID;
+		int[] types = new int[16];
+		int[] names = new int[16];
+		int[] values = new int[16];
+		int count;
+
+		UserUpdates(long steamID) {
+			this.steamID = steamID;
+		}
+
+		void add(int type, int name, int value) {
+			if (count == types.length) {
+				types = grow(types);
+				names = grow(names);
+				values = grow(values);
+			}
+			types[count] = type;
+			names[count] = name;
+			values[count] = value;
+			count++;
+		}
+	}
+
+	private final SteamGameServerStats stats;
+
+	private final Map<String, Integer> nameHandles = new HashMap<String, Integer>();
+	private final List<String> nameList = new ArrayList<String>();
+	private int[] nameOffsets = new int[16];
+	private ByteBuffer nameTable = ByteBuffer.allocateDirect(1024);
+
+	private final SteamLongMap<UserUpdates> users = new SteamLongMap<UserUpdates>(64);
+	private final List<UserUpdates> userList = new ArrayList<UserUpdates>();
+
+	private long[] steamIDs = new long[16];
+	private int[] updateEnds = new int[16];
+	private long[] apiCalls = new long[16];
+	private int[] types = new int[64];
+	private int[] names = new int[64];
+	private int[] nameOffsetsApplied = new int[64];
+	private int[] values = new int[64];
+	private int[] results = new int[64];
+
+	private int numUsersApplied;
+	private long[] failedUsers = new long[16];
+	private int[] failedNames = new int[16];
+	private int[] failedTypes = new int[16];
+	private int numFailures;
+
+	public SteamGameServerUserStatsBatch(SteamGameServerStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Registers a stat or achievement name, and returns its handle. Registering a name again returns
+	 * the same handle.
+	 */
+	public int internName(String name) {
+		Integer handle = nameHandles.get(name);
+		if (handle != null) {
+			return handle;
+		}
+
+		byte[] bytes = name.getBytes(UTF8);
+		if (nameTable.remaining() < bytes.length + 1) {
+			int capacity = nameTable.capacity();
+			while (capacity - nameTable.position() < bytes.length + 1) {
+				capacity *= 2;
+			}
+			ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+			nameTable.flip();
+			grown.put(nameTable);
+			nameTable = grown;
+		}
+
+		int index = nameList.size();
+		if (index == nameOffsets.length) {
+			nameOffsets = grow(nameOffsets);
+		}
+
+		nameOffsets[index] = nameTable.position();
+		nameTable.put(bytes);
+		nameTable.put((byte) 0);
+
+		nameList.add(name);
+		nameHandles.put(name, index);
+		return index;
+	}
+
+	public String getName(int handle) {
+		return nameList.get(handle);
+	}
+
+	public void setUserStatI(SteamID steamIDUser, int name, int value) {
+		setUserStatI(steamIDUser.handle, name, value);
+	}
+
+	/**
+	 * Sets a stat of a user addressed by a native handle, as returned by
+	 * {@link SteamNativeHandle#getNativeHandle(SteamNativeHandle)}.
+	 */
+	public void setUserStatI(long steamIDUser, int name, int value) {
+		getUser(steamIDUser, name).add(SetStatI, name, value);
+	}
+
+	public void setUserStatF(SteamID steamIDUser, int name, float value) {
+		setUserStatF(steamIDUser.handle, name, value);
+	}
+
+	public void setUserStatF(long steamIDUser, int name, float value) {
+		getUser(steamIDUser, name).add(SetStatF, name, Float.floatToRawIntBits(value));
+	}
+
+	public void setUserAchievement(SteamID steamIDUser, int name) {
+		setUserAchievement(steamIDUser.handle, name);
+	}
+
+	public void setUserAchievement(long steamIDUser, int name) {
+		getUser(steamIDUser, name).add(SetAchievement, name, 0);
+	}
+
+	public void clearUserAchievement(SteamID steamIDUser, int name) {
+		clearUserAchievement(steamIDUser.handle, name);
+	}
+
+	public void clearUserAchievement(long steamIDUser, int name) {
+		getUser(steamIDUser, name).add(ClearAchievement, name, 0);
+	}
+
+	/**
+	 * Discards all pending updates.
+	 */
+	public void clear() {
+		users.clear();
+		userList.clear();
+	}
+
+	/**
+	 * Applies the pending updates of all users with one native call, and clears them.
+	 *
+	 * If <code>storeStats</code> is true, the stats of each user are stored afterwards, and the API call
+	 * handles can be queried with {@link SteamGameServerUserStatsBatch#getStoreCall(int)}.
+	 *
+	 * Returns the number of failed updates.
+	 */
+	public int apply(boolean storeStats) {
+		int numUsers = userList.size();
+		int numUpdates = 0;
+
+		for (int i = 0; i < numUsers; i++) {
+			numUpdates += userList.get(i).count;
+		}
+
+		ensureCapacity(numUsers, numUpdates);
+
+		int end = 0;
+		for (int i = 0; i < numUsers; i++) {
+			UserUpdates user = userList.get(i);
+			System.arraycopy(user.types, 0, types, end, user.count);
+			System.arraycopy(user.names, 0, names, end, user.count);
+			System.arraycopy(user.values, 0, values, end, user.count);
+
+			for (int update = 0; update < user.count; update++) {
+				nameOffsetsApplied[end + update] = nameOffsets[user.names[update]];
+			}
+
+			end += user.count;
+
+			steamIDs[i] = user.steamID;
+			updateEnds[i] = end;
+		}
+
+		numUsersApplied = numUsers;
+		numFailures = 0;
+
+		if (numUsers > 0) {
+			SteamGameServerStatsNative.applyUserStats(stats.pointer, nameTable, numUsers, steamIDs, updateEnds,
+					types, nameOffsetsApplied, values, results, storeStats, apiCalls);
+
+			int first = 0;
+			for (int i = 0; i < numUsers; i++) {
+				for (int update = first; update < updateEnds[i]; update++) {
+					if (results[update] == 0) {
+						addFailure(steamIDs[i], types[update], names[update]);
+					}
+				}
+				first = updateEnds[i];
+			}
+		}
+
+		clear();
+		return numFailures;
+	}
+
+	/**
+	 * Returns the number of users whose updates have been applied by the last call to apply().
+	 */
+	public int getNumUsersApplied() {
+		return numUsersApplied;
+	}
+
+	public long getUserApplied(int index) {
+		return steamIDs[index];
+	}
+
+	/**
+	 * Returns the API call handle of StoreUserStats() for a user applied by the last call to apply(),
+	 * or an invalid handle if stats haven't been stored.
+	 */
+	public SteamAPICall getStoreCall(int index) {
+		return new SteamAPICall(apiCalls[index]);
+	}
+
+	/**
+	 * Returns the number of updates rejected by Steam during the last call to apply().
+	 */
+	public int getNumFailures() {
+		return numFailures;
+	}
+
+	public long getFailedUser(int failure) {
+		return failedUsers[failure];
+	}
+
+	/**
+	 * Returns the name handle of a failed update.
+	 */
+	public int getFailedName(int failure) {
+		return failedNames[failure];
+	}
+
+	/**
+	 * Returns true if the failed update was an achievement update, or false for a stat.
+	 */
+	public boolean isFailedAchievement(int failure) {
+		return failedTypes[failure] == SetAchievement || failedTypes[failure] == ClearAchievement;
+	}
+
+	private UserUpdates getUser(long steamIDUser, int name) {
+		if (name < 0 || name >= nameList.size()) {
+			throw new IllegalArgumentException("Invalid name handle: " + name);
+		}
+
+		UserUpdates user = users.get(steamIDUser);
+		if (user == null) {
+			user = new UserUpdates(steamIDUser);
+			users.put(steamIDUser, user);
+			userList.add(user);
+		}
+		return user;
+	}
+
+	private void addFailure(long steamID, int type, int name) {
+		if (numFailures == failedUsers.length) {
+			long[] grownUsers = new long[numFailures * 2];
+			System.arraycopy(failedUsers, 0, grownUsers, 0, numFailures);
+			failedUsers = grownUsers;
+			failedNames = grow(failedNames);
+			failedTypes = grow(failedTypes);
+		}
+		failedUsers[numFailures] = steamID;
+		failedNames[numFailures] = name;
+		failedTypes[numFailures] = type;
+		numFailures++;
+	}
+
+	private void ensureCapacity(int numUsers, int numUpdates) {
+		if (steamIDs.length < numUsers) {
+			steamIDs = new long[numUsers];
+			updateEnds = new int[numUsers];
+			apiCalls = new long[numUsers];
+		}
+
+		if (types.length < numUpdates) {
+			types = new int[numUpdates];
+			names = new int[numUpdates];
+			nameOffsetsApplied = new int[numUpdates];
+			values = new int[numUpdates];
+			results = new int[numUpdates];
+		}
+	}
+
+	private static int[] grow(int[] array) {
+		int[] grown = new int[array.length * 2];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+}
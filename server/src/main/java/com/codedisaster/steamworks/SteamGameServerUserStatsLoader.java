@@ -0,0 +1,227 @@
+package com.codedisaster.steamworks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Requests user stats with {@link SteamGameServerStats#requestUserStats(SteamID)}, with a limited number
+ * of requests in flight, and a {@link SteamFuture} per user.
+ * <p>
+ * Requests beyond the limit are queued. Requests which fail with {@link SteamResult#Fail} or
+ * {@link SteamResult#Timeout}, or which don't receive a result in time, are retried with exponential
+ * backoff, up to a maximum number of attempts. The future is then completed with the last result.
+ * <p>
+ * Forward {@link SteamGameServerStatsCallback#onStatsReceived(SteamResult, SteamID)} to
+ * {@link SteamGameServerUserStatsLoader#onStatsReceived(SteamResult, SteamID)}, and call
+ * {@link SteamGameServerUserStatsLoader#update()} regularly to send queued requests. Requests can be
+ * added from any thread. Futures are completed by the thread calling these functions.
+ */
+public class SteamGameServerUserStatsLoader {
+
+	private static class Request {
+		final long steamID;
+		final SteamFuture<SteamResult> future = new SteamFuture<SteamResult>();
+		int attempts;
+		long notBefore;
+		long deadline;
+		boolean inFlight;
+		SteamResult result;
+
+		Request(long steamID) {
+			this.steamID = steamID;
+		}
+	}
+
+	private final SteamGameServerStats stats;
+	private final int maxInFlight;
+	private final int maxAttempts;
+	private final long retryDelayNanos;
+	private final long requestTimeoutNanos;
+
+	private final SteamLongMap<Request> requests = new SteamLongMap<Request>(64);
+	private final ArrayDeque<Request> queue = new ArrayDeque<Request>();
+	private final List<Request> inFlight = new ArrayList<Request>();
+	private final List<Request> completed = new ArrayList<Request>();
+
+	private long numRequestsSent;
+	private long numRetries;
+
+	/**
+	 * @param maxInFlight maximum number of requests waiting for a result
+	 * @param maxAttempts maximum number of requests sent per user
+	 * @param retryDelayMillis delay before the first retry, doubled with each further retry
+	 * @param requestTimeoutMillis time to wait for a result before a request is considered timed out
+	 */
+	public SteamGameServerUserStatsLoader(SteamGameServerStats stats, int maxInFlight, int maxAttempts,
+										  long retryDelayMillis, long requestTimeoutMillis) {
+		this.stats = stats;
+		this.maxInFlight = maxInFlight;
+		this.maxAttempts = maxAttempts;
+		this.retryDelayNanos = retryDelayMillis * 1000000L;
+		this.requestTimeoutNanos = requestTimeoutMillis * 1000000L;
+	}
+
+	public SteamFuture<SteamResult> requestUserStats(SteamID steamIDUser) {
+		return requestUserStats(steamIDUser.handle);
+	}
+
+	/**
+	 * Queues a request for a user addressed by a native handle, as returned by
+	 * {@link SteamNativeHandle#getNativeHandle(SteamNativeHandle)}. If a request for this user is already
+	 * pending, its future is returned.
+	 */
+	public synchronized SteamFuture<SteamResult> requestUserStats(long steamIDUser) {
+		Request request = requests.get(steamIDUser);
+		if (request == null) {
+			request = new Request(steamIDUser);
+			requests.put(steamIDUser, request);
+			queue.addLast(request);
+		}
+		return request.future;
+	}
+
+	/**
+	 * Processes a result. To be called from the stats callback.
+	 */
+	public void onStatsReceived(SteamResult result, SteamID steamIDUser) {
+		Request request;
+
+		synchronized (this) {
+			request = requests.get(steamIDUser.handle);
+			if (request == null || request.attempts == 0) {
+				return;
+			}
+
+			if (request.inFlight) {
+				request.inFlight = false;
+				inFlight.remove(request);
+			} else {
+				// late result of a timed out request, waiting for retry
+				queue.remove(request);
+			}
+
+			if (!retry(request, result, System.nanoTime())) {
+				requests.remove(request.steamID);
+			} else {
+				request = null;
+			}
+		}
+
+		if (request != null) {
+			request.future.complete(result);
+		}
+	}
+
+	/**
+	 * Times out requests without result, and sends queued requests.
+	 */
+	public void update() {
+		long now = System.nanoTime();
+
+		synchronized (this) {
+			for (int i = inFlight.size() - 1; i >= 0; i--) {
+				Request request = inFlight.get(i);
+				if (now - request.deadline >= 0) {
+					request.inFlight = false;
+					inFlight.remove(i);
+					if (!retry(request, SteamResult.Timeout, now)) {
+						requests.remove(request.steamID);
+						completed.add(request);
+					}
+				}
+			}
+
+			int numQueued = queue.size();
+			while (numQueued-- > 0 && inFlight.size() < maxInFlight) {
+				Request request = queue.pollFirst();
+
+				if (now - request.notBefore < 0) {
+					// waiting for retry
+					queue.addLast(request);
+					continue;
+				}
+
+				request.attempts++;
+				numRequestsSent++;
+
+				long call = SteamGameServerStatsNative.requestUserStats(stats.pointer, request.steamID);
+
+				if (call == 0) {
+					if (!retry(request, SteamResult.Fail, now)) {
+						requests.remove(request.steamID);
+						completed.add(request);
+					}
+					continue;
+				}
+
+				request.inFlight = true;
+				request.deadline = now + requestTimeoutNanos;
+				inFlight.add(request);
+			}
+		}
+
+		for (int i = 0; i < completed.size(); i++) {
+			Request request = completed.get(i);
+			request.future.complete(request.result);
+		}
+
+		completed.clear();
+	}
+
+	/**
+	 * Cancels all pending requests.
+	 */
+	public void cancelAll() {
+		List<Request> cancelled = new ArrayList<Request>();
+
+		synchronized (this) {
+			for (int slot = 0; slot < requests.capacity(); slot++) {
+				Request request = requests.valueAt(slot);
+				if (request != null) {
+					cancelled.add(request);
+				}
+			}
+			requests.clear();
+			queue.clear();
+			inFlight.clear();
+		}
+
+		for (Request request : cancelled) {
+			request.future.cancel(false);
+		}
+	}
+
+	public synchronized int getNumQueued() {
+		return queue.size();
+	}
+
+	public synchronized int getNumInFlight() {
+		return inFlight.size();
+	}
+
+	public synchronized long getNumRequestsSent() {
+		return numRequestsSent;
+	}
+
+	public synchronized long getNumRetries() {
+		return numRetries;
+	}
+
+	/**
+	 * Queues a retry if the result allows for it. Returns false if the request is done.
+	 */
+	private boolean retry(Request request, SteamResult result, long now) {
+		request.result = result;
+
+		if ((result == SteamResult.Fail || result == SteamResult.Timeout) && request.attempts < maxAttempts) {
+			request.notBefore = now + (retryDelayNanos << Math.min(request.attempts - 1, 16));
+			queue.addLast(request);
+			numRetries++;
+			return true;
+		}
+
+		return false;
+	}
+
+}
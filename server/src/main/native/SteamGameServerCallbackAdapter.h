@@ -13,7 +13,9 @@
 
     #define invokeCallback(fn) \
         JNIEnv* env; bool attached = attachThread(&env); \
+        bool framePushed = env->PushLocalFrame(LocalFrameCapacity) == 0; \
         fn \
+        if (framePushed) env->PopLocalFrame(NULL); \
         if (attached) detachThread();
 
     // dummy function pointer type to please the compiler, this workaround doesn't call attach()
@@ -32,12 +34,34 @@ class SteamGameServerCallbackAdapter {
 public:
     virtual ~SteamGameServerCallbackAdapter();
 
+	/**
+		If enabled, native threads which invoke callbacks are attached to the JVM once, as daemon threads,
+		and stay attached until they exit. Otherwise they are attached and detached for each callback.
+	*/
+	static void setKeepThreadsAttached(bool keepAttached);
+
+	/**
+		Returns the number of times a native thread has been attached to the JVM to invoke a callback.
+	*/
+	static jlong getThreadAttachCount();
+
 protected:
     SteamGameServerCallbackAdapter(JNIEnv* env, jobject callback);
     SteamGameServerCallbackAdapter(JNIEnv* env, jclass callbackClass);
 
+	/**
+		Invokes the function in its own local reference frame, so local references created by callbacks are
+		released even if the thread stays attached to the JVM.
+	*/
     void attach(SteamInvokeCallbackFunction fn) const;
 
+	static const jint LocalFrameCapacity = 16;
+
+	/**
+		Method IDs are resolved once per method, and cached for the lifetime of the adapter. The cache
+		compares the method and signature arguments by address, so they are expected to be string literals.
+		It can be used by callbacks invoked concurrently from different threads.
+	*/
 	void callVoidMethod(JNIEnv* env, const char* method, const char* signature, ...) const;
 	void callStaticVoidMethod(JNIEnv* env, const char* method, const char* signature, ...) const;
 
@@ -48,8 +72,27 @@ private:
 	void detachThread() const;
 
 private:
+	jmethodID getMethodID(JNIEnv* env, const char* method, const char* signature, bool isStatic) const;
+	void throwSteamException(JNIEnv* env, const char* message) const;
+	void clearException(JNIEnv* env) const;
+
+	struct MethodIDCacheEntry {
+		const char* method;
+		const char* signature;
+		jmethodID methodID;
+	};
+
+	static const int MethodIDCacheSize = 32;
+
+	static bool s_keepThreadsAttached;
+	static volatile jlong s_threadAttachCount;
+
     JavaVM* m_vm;
     jobject m_callback;
 	jclass m_callbackClass;
 
+	mutable MethodIDCacheEntry m_methodIDs[MethodIDCacheSize];
+	mutable volatile int m_numMethodIDs;
+	mutable volatile int m_methodIDsLock;
+
 };
@@ -0,0 +1,58 @@
+package com.codedisaster.steamworks.test;
+
+import com.codedisaster.steamworks.*;
+
+/**
+ * Measures the cost of native to Java callback dispatch, with and without cached method IDs.
+ * Doesn't need a running Steam client.
+ *
+ * Arguments: [iterations per round] [rounds]
+ */
+public class SteamCallbackBenchmarkTest {
+
+	private static class Counter implements SteamCallbackBenchmark.Callback {
+
+		long sum;
+
+		@Override
+		public void onEvent(int value) {
+			sum += value;
+		}
+	}
+
+	public static void main(String[] arguments) {
+		int iterations = arguments.length > 0 ? Integer.parseInt(arguments[0]) : 1000000;
+		int rounds = arguments.length > 1 ? Integer.parseInt(arguments[1]) : 10;
+
+		try {
+			System.out.println("Load native libraries ...");
+			SteamAPI.loadLibraries();
+		} catch (SteamException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		Counter counter = new Counter();
+		SteamCallbackBenchmark benchmark = new SteamCallbackBenchmark(counter);
+
+		// warm up both paths, so the JIT compiles the callback
+		benchmark.dispatch(iterations, false);
+		benchmark.dispatch(iterations, true);
+
+		long uncached = Long.MAX_VALUE;
+		long cached = Long.MAX_VALUE;
+
+		for (int round = 0; round < rounds; round++) {
+			uncached = Math.min(uncached, benchmark.dispatch(iterations, false));
+			cached = Math.min(cached, benchmark.dispatch(iterations, true));
+		}
+
+		benchmark.dispose();
+
+		System.out.println("Best of " + rounds + " rounds, " + iterations + " callbacks each:");
+		System.out.println(String.format("  uncached method IDs: %.1f ns per callback", (double) uncached / iterations));
+		System.out.println(String.format("  cached method IDs:   %.1f ns per callback", (double) cached / iterations));
+		System.out.println("  (checksum " + counter.sum + ")");
+	}
+
+}
@@ -7,6 +7,8 @@ import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Expects a binary file <i>encryptedappticket.key</i> in the working directory. The file should contain
@@ -20,6 +22,7 @@ public class SteamEncryptedAppTicketTest extends SteamTestApp {
 
 	private ByteBuffer ticketEncrypt = ByteBuffer.allocateDirect(1024);
 	private ByteBuffer ticketDecrypt = ByteBuffer.allocateDirect(1024);
+	private boolean ticketDecrypted = false;
 
 	private static final byte[] privateKey = new byte[SteamEncryptedAppTicket.SymmetricKeyLen];
 
@@ -52,6 +55,7 @@ public class SteamEncryptedAppTicketTest extends SteamTestApp {
 					if (encryptedAppTicket.decryptTicket(ticketEncrypt, ticketDecrypt, privateKey, ticketSize)) {
 						System.out.println("decrypted app ticket size: " + ticketSize[0]);
 						ticketDecrypt.limit(ticketSize[0]);
+						ticketDecrypted = true;
 
 						ByteBuffer dataIncluded = ByteBuffer.allocateDirect(100);
 						int dataLength = encryptedAppTicket.getUserVariableData(ticketDecrypt, dataIncluded);
@@ -62,6 +66,8 @@ public class SteamEncryptedAppTicketTest extends SteamTestApp {
 							String userString = new String(userData, Charset.defaultCharset());
 							System.out.println("included user data: " + dataLength + " bytes, '" + userString + "'");
 						}
+
+						checkTicketView(ticketDecrypt, dataLength);
 					} else {
 						System.err.println("failed to decrypt app ticket");
 					}
@@ -74,6 +80,101 @@ public class SteamEncryptedAppTicketTest extends SteamTestApp {
 		}
 	};
 
+	/**
+	 * Compares the fields read by {@link SteamEncryptedAppTicketView} with the native accessors.
+	 */
+	private void checkTicketView(ByteBuffer ticket, int userDataLength) throws SteamException {
+		SteamEncryptedAppTicketView view = new SteamEncryptedAppTicketView();
+
+		if (!view.wrap(ticket)) {
+			System.err.println("ticket view: failed to parse decrypted ticket");
+			return;
+		}
+
+		int appID = encryptedAppTicket.getTicketAppID(ticket);
+		int mismatches = 0;
+
+		mismatches += check("steam ID", view.getSteamIDHandle(),
+				SteamNativeHandle.getNativeHandle(encryptedAppTicket.getTicketSteamID(ticket)));
+		mismatches += check("app ID", view.getAppID(), appID);
+		mismatches += check("issue time", view.getIssueTime(), encryptedAppTicket.getTicketIssueTime(ticket));
+		mismatches += check("user data size", view.getUserVariableDataSize(), Math.max(userDataLength, 0));
+		mismatches += check("owns app", view.userOwnsApp(appID) ? 1 : 0,
+				encryptedAppTicket.userOwnsAppInTicket(ticket, appID) ? 1 : 0);
+
+		System.out.println("ticket view: version " + view.getVersion() + ", " + view.getLicenseCount() +
+				" licenses, " + view.getDLCCount() + " DLC, " + mismatches + " mismatches with native accessors");
+	}
+
+	/**
+	 * Decrypts the last ticket received on many threads at once, and compares each result with a
+	 * single-threaded run, to check the native library for thread safety issues.
+	 */
+	private void stressTest() throws SteamException {
+		if (!ticketDecrypted) {
+			System.err.println("stress: no ticket decrypted yet, use 'encrypt' first");
+			return;
+		}
+
+		int appID = encryptedAppTicket.getTicketAppID(ticketDecrypt);
+
+		SteamEncryptedAppTicket.TicketInfo reference = new SteamEncryptedAppTicket.TicketInfo();
+		ByteBuffer decrypted = ByteBuffer.allocateDirect(SteamEncryptedAppTicketBatch.MaxTicketSize);
+		encryptedAppTicket.decryptAndInspect(ticketEncrypt, decrypted, privateKey, appID, reference);
+
+		int numThreads = Runtime.getRuntime().availableProcessors() * 2;
+		int numTickets = 10000;
+		int numRounds = 20;
+
+		ByteBuffer[] tickets = new ByteBuffer[numTickets];
+		SteamEncryptedAppTicket.TicketInfo[] results = new SteamEncryptedAppTicket.TicketInfo[numTickets];
+		for (int i = 0; i < numTickets; i++) {
+			tickets[i] = ticketEncrypt.duplicate();
+			results[i] = new SteamEncryptedAppTicket.TicketInfo();
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		SteamEncryptedAppTicketBatch batch = new SteamEncryptedAppTicketBatch(executor, numThreads);
+
+		int mismatches = 0;
+		long start = System.nanoTime();
+
+		try {
+			for (int round = 0; round < numRounds; round++) {
+				batch.decryptAndInspect(tickets, numTickets, privateKey, appID, results);
+				for (SteamEncryptedAppTicket.TicketInfo result : results) {
+					if (!matches(reference, result)) {
+						mismatches++;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			System.err.println("stress: interrupted");
+		} finally {
+			executor.shutdown();
+		}
+
+		long millis = (System.nanoTime() - start) / 1000000L;
+		System.out.println("stress: " + numRounds * numTickets + " tickets on " + numThreads + " threads in "
+				+ millis + " ms, " + mismatches + " mismatches");
+	}
+
+	private static boolean matches(SteamEncryptedAppTicket.TicketInfo a, SteamEncryptedAppTicket.TicketInfo b) {
+		return a.isDecrypted() == b.isDecrypted() && a.getDecryptedSize() == b.getDecryptedSize()
+				&& a.getAppID() == b.getAppID() && a.getIssueTime() == b.getIssueTime()
+				&& a.getSteamIDHandle() == b.getSteamIDHandle() && a.isForApp() == b.isForApp()
+				&& a.userOwnsApp() == b.userOwnsApp() && a.isVacBanned() == b.isVacBanned()
+				&& a.getUserVariableDataSize() == b.getUserVariableDataSize();
+	}
+
+	private static int check(String field, long viewValue, long nativeValue) {
+		if (viewValue != nativeValue) {
+			System.err.println("ticket view: " + field + " is " + viewValue + ", native " + nativeValue);
+			return 1;
+		}
+		return 0;
+	}
+
 	@Override
 	protected void registerInterfaces() throws SteamException {
 		SteamEncryptedAppTicket.loadLibraries();
@@ -100,6 +201,8 @@ public class SteamEncryptedAppTicketTest extends SteamTestApp {
 			dataToInclude.put(ident);
 			dataToInclude.flip();
 			user.requestEncryptedAppTicket(dataToInclude);
+		} else if (input.equals("stress")) {
+			stressTest();
 		}
 	}
 
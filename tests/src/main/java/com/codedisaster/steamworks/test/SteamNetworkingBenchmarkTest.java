@@ -0,0 +1,85 @@
+package com.codedisaster.steamworks.test;
+
+import com.codedisaster.steamworks.*;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Measures the cost of sending P2P packets with one native call per packet, compared to
+ * {@link SteamNetworking#sendP2PPackets(ByteBuffer, SteamNetworking.P2PSendBatch)}. Packets are sent to a
+ * stub networking interface, so this doesn't need a running Steam client.
+ *
+ * Arguments: [packets per batch] [packet size] [rounds]
+ */
+public class SteamNetworkingBenchmarkTest {
+
+	public static void main(String[] arguments) {
+		int batchSize = arguments.length > 0 ? Integer.parseInt(arguments[0]) : 256;
+		int packetSize = arguments.length > 1 ? Integer.parseInt(arguments[1]) : 64;
+		int rounds = arguments.length > 2 ? Integer.parseInt(arguments[2]) : 10;
+
+		try {
+			System.out.println("Load native libraries ...");
+			SteamAPI.loadLibraries();
+			run(batchSize, packetSize, rounds);
+		} catch (SteamException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void run(int batchSize, int packetSize, int rounds) throws SteamException {
+		SteamNetworkingBenchmark benchmark = new SteamNetworkingBenchmark();
+		SteamNetworking networking = benchmark.getNetworking();
+
+		ByteBuffer data = ByteBuffer.allocateDirect(batchSize * packetSize);
+		ByteBuffer packet = data.duplicate();
+
+		SteamID[] steamIDs = new SteamID[batchSize];
+		SteamNetworking.P2PSendBatch batch = new SteamNetworking.P2PSendBatch(batchSize);
+
+		for (int i = 0; i < batchSize; i++) {
+			steamIDs[i] = SteamID.createFromNativeHandle(76561197960265728L + (i % 8));
+			batch.add(steamIDs[i], i * packetSize, packetSize, SteamNetworking.P2PSend.Unreliable, 0);
+		}
+
+		int iterations = Math.max(1, 1000000 / batchSize);
+		long single = Long.MAX_VALUE;
+		long batched = Long.MAX_VALUE;
+
+		// first round warms up both paths
+		for (int round = 0; round <= rounds; round++) {
+			long start = System.nanoTime();
+			for (int n = 0; n < iterations; n++) {
+				for (int i = 0; i < batchSize; i++) {
+					packet.limit((i + 1) * packetSize);
+					packet.position(i * packetSize);
+					networking.sendP2PPacket(steamIDs[i], packet, SteamNetworking.P2PSend.Unreliable, 0);
+				}
+			}
+			long singleTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int n = 0; n < iterations; n++) {
+				networking.sendP2PPackets(data, batch);
+			}
+			long batchedTime = System.nanoTime() - start;
+
+			if (round > 0) {
+				single = Math.min(single, singleTime);
+				batched = Math.min(batched, batchedTime);
+			}
+		}
+
+		long packets = (long) iterations * batchSize;
+
+		System.out.println("Best of " + rounds + " rounds, " + packets + " packets of " + packetSize
+				+ " bytes each, " + batchSize + " packets per batch:");
+		System.out.println(String.format("  sendP2PPacket():  %.1f ns per packet", (double) single / packets));
+		System.out.println(String.format("  sendP2PPackets(): %.1f ns per packet", (double) batched / packets));
+		System.out.println("  (stub received " + benchmark.getPacketsSent() + " packets, "
+				+ benchmark.getBytesSent() + " bytes)");
+
+		benchmark.dispose();
+	}
+
+}
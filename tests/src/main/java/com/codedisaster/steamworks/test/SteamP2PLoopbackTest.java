@@ -0,0 +1,232 @@
+package com.codedisaster.steamworks.test;
+
+import com.codedisaster.steamworks.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs the P2P helpers through {@link SteamP2PLoopbackTransport}, with a simulated send queue.
+ * Doesn't need native libraries, or a running Steam client.
+ */
+public class SteamP2PLoopbackTest {
+
+	private static final long UserA = 76561197960265729L;
+	private static final long UserB = 76561197960265730L;
+
+	private static int failures = 0;
+
+	/**
+	 * Reads messages with relative gets, like most handlers would, and keeps the last one.
+	 */
+	private static class Receiver implements SteamP2PFraming.MessageHandler {
+
+		int numMessages;
+		long sum;
+		byte[] last;
+
+		@Override
+		public void onP2PMessage(long steamIDRemote, int channel, ByteBuffer data) {
+			numMessages++;
+			last = new byte[data.remaining()];
+			data.duplicate().get(last);
+			while (data.remaining() >= 4) {
+				sum += data.getInt();
+			}
+		}
+	}
+
+	public static void main(String[] arguments) {
+		try {
+			testFlowControl();
+			testCoalescing();
+			testFragmentation();
+		} catch (SteamException e) {
+			e.printStackTrace();
+			failures++;
+		}
+
+		System.out.println(failures == 0 ? "All checks passed." : failures + " checks failed.");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Sends faster than the simulated upload drains, on several channels, so users get congested, packets
+	 * are coalesced or dropped, and pending packets are flushed on recovery.
+	 */
+	private static void testFlowControl() throws SteamException {
+		System.out.println("Flow control ...");
+
+		int packetSize = 500;
+		int numChannels = 8;
+		int highWatermark = 4000;
+		int lowWatermark = 1000;
+
+		SteamP2PLoopbackTransport a = new SteamP2PLoopbackTransport(UserA);
+		SteamP2PLoopbackTransport b = new SteamP2PLoopbackTransport(UserB);
+		a.connect(b);
+		a.setSendRate(1000);
+
+		SteamP2PFlowControl flowControl = new SteamP2PFlowControl(a, highWatermark, lowWatermark);
+		SteamP2PFlowControl.PeerMetrics metrics = new SteamP2PFlowControl.PeerMetrics();
+
+		ByteBuffer packet = ByteBuffer.allocateDirect(packetSize);
+		ByteBuffer received = ByteBuffer.allocateDirect(packetSize);
+		long[] steamIDRemote = new long[1];
+		int[] lastSequence = new int[numChannels];
+
+		boolean congested = false;
+		boolean outOfOrder = false;
+		int maxQueued = 0;
+
+		for (int tick = 0; tick < 200; tick++) {
+			// stop sending for the last ticks, so the queue drains
+			if (tick < 150) {
+				for (int channel = 0; channel < numChannels; channel++) {
+					packet.clear();
+					packet.putInt(0, tick);
+					flowControl.sendP2PPacket(UserB, packet, SteamNetworking.P2PSend.Unreliable, channel);
+				}
+				packet.clear();
+				flowControl.sendP2PPacket(UserB, packet, SteamNetworking.P2PSend.UnreliableNoDelay, 0);
+			}
+
+			flowControl.update();
+			flowControl.getPeerMetrics(UserB, metrics);
+			congested |= metrics.isCongested();
+			maxQueued = Math.max(maxQueued, metrics.getBytesQueuedForSend());
+
+			a.deliverQueuedPackets();
+
+			for (int channel = 0; channel < numChannels; channel++) {
+				while (b.isP2PPacketAvailable(channel) > 0) {
+					received.clear();
+					b.readP2PPacket(received, channel, steamIDRemote);
+					int sequence = received.getInt(0);
+					outOfOrder |= sequence < lastSequence[channel];
+					lastSequence[channel] = sequence;
+				}
+			}
+		}
+
+		flowControl.update();
+		flowControl.getPeerMetrics(UserB, metrics);
+
+		check("user got congested", congested);
+		check("packets coalesced", metrics.getPacketsCoalesced() > 0);
+		check("packets dropped", metrics.getPacketsDropped() > 0);
+		check("user recovered", !metrics.isCongested());
+		check("send queue drained", metrics.getBytesQueuedForSend() == 0);
+		check("flush stops at high watermark", maxQueued < highWatermark + 2 * packetSize);
+		check("packets in order per channel", !outOfOrder);
+		check("latest packets delivered", lastSequence[0] == 149);
+	}
+
+	/**
+	 * Coalesces small messages into one packet, and reads them with a handler which moves the buffer position.
+	 */
+	private static void testCoalescing() throws SteamException {
+		System.out.println("Coalescing ...");
+
+		SteamP2PLoopbackTransport a = new SteamP2PLoopbackTransport(UserA);
+		SteamP2PLoopbackTransport b = new SteamP2PLoopbackTransport(UserB);
+		a.connect(b);
+
+		Receiver receiver = new Receiver();
+		SteamP2PFraming sender = new SteamP2PFraming(a, null, 1200, 64 * 1024);
+		SteamP2PFraming framing = new SteamP2PFraming(b, receiver, 1200, 64 * 1024);
+		sender.setMaxDelay(1000);
+
+		ByteBuffer message = ByteBuffer.allocateDirect(4);
+		int numMessages = 100;
+		long sum = 0;
+
+		for (int i = 1; i <= numMessages; i++) {
+			message.clear();
+			message.putInt(0, i);
+			sender.sendP2PMessage(UserB, message, SteamNetworking.P2PSend.Unreliable, 0);
+			sum += i;
+		}
+		sender.flush();
+		framing.readP2PPackets(0, Integer.MAX_VALUE);
+
+		check("messages coalesced", a.getPacketsSent() == 1);
+		check("all messages received", receiver.numMessages == numMessages);
+		check("message contents", receiver.sum == sum);
+	}
+
+	/**
+	 * Splits a large message into fragments, and delivers them out of order, with duplicates.
+	 */
+	private static void testFragmentation() throws SteamException {
+		System.out.println("Fragmentation ...");
+
+		SteamP2PLoopbackTransport a = new SteamP2PLoopbackTransport(UserA);
+		SteamP2PLoopbackTransport b = new SteamP2PLoopbackTransport(UserB);
+		a.connect(b);
+
+		Receiver receiver = new Receiver();
+		SteamP2PFraming sender = new SteamP2PFraming(a, null, 1200, 64 * 1024);
+		SteamP2PFraming framing = new SteamP2PFraming(b, receiver, 1200, 64 * 1024);
+
+		byte[] bytes = new byte[10000];
+		new Random(1).nextBytes(bytes);
+
+		ByteBuffer message = ByteBuffer.allocateDirect(bytes.length);
+		message.put(bytes);
+		message.flip();
+		sender.sendP2PMessage(UserB, message, SteamNetworking.P2PSend.Reliable, 0);
+
+		// capture the fragments as sent
+		List<ByteBuffer> fragments = new ArrayList<ByteBuffer>();
+		long[] steamIDRemote = new long[1];
+		int size;
+		while ((size = b.isP2PPacketAvailable(0)) > 0) {
+			ByteBuffer fragment = ByteBuffer.allocateDirect(size);
+			b.readP2PPacket(fragment, 0, steamIDRemote);
+			fragments.add(fragment);
+		}
+
+		check("message fragmented", fragments.size() > 1);
+
+		Random random = new Random(2);
+		boolean complete = true;
+		boolean intact = true;
+
+		for (int round = 0; round < 100; round++) {
+			List<ByteBuffer> shuffled = new ArrayList<ByteBuffer>(fragments);
+			Collections.shuffle(shuffled, random);
+			ByteBuffer missing = shuffled.remove(random.nextInt(shuffled.size()));
+
+			int delivered = receiver.numMessages;
+			for (int i = 0; i < shuffled.size() * 2; i++) {
+				framing.onP2PPacket(UserA, 0, shuffled.get(random.nextInt(shuffled.size())));
+			}
+			for (ByteBuffer fragment : shuffled) {
+				framing.onP2PPacket(UserA, 0, fragment);
+			}
+			complete &= receiver.numMessages == delivered;
+
+			framing.onP2PPacket(UserA, 0, missing);
+			intact &= receiver.numMessages == delivered + 1 && Arrays.equals(receiver.last, bytes);
+		}
+
+		check("no delivery with missing fragments", complete);
+		check("delivered once when complete", intact);
+		check("duplicate fragments ignored", framing.getFragmentsIgnored() > 0);
+	}
+
+	private static void check(String name, boolean condition) {
+		System.out.println("  " + name + ": " + (condition ? "ok" : "FAILED"));
+		if (!condition) {
+			failures++;
+		}
+	}
+
+}